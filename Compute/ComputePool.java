@@ -0,0 +1,73 @@
+package Compute;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Worker pool shared by the K-Means and linear algebra classes
+//Backed by a ForkJoinPool, so it runs plain Callables as well as recursive fork-join tasks
+//A pool created with the constructor belongs to the caller and is shut down by close()
+//shared() is one process-wide pool whose close() does nothing, so it can be handed to any number of objects
+public final class ComputePool implements AutoCloseable {
+    private final ForkJoinPool pool;
+    private final boolean owned; //Whether close() shuts the threads down
+
+    public ComputePool(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    private ComputePool(ForkJoinPool pool, boolean owned) {
+        this.pool = pool;
+        this.owned = owned;
+    }
+
+    //Lazily created on first use, one worker per available processor
+    private static class Shared {
+        private static final ComputePool INSTANCE =
+                new ComputePool(new ForkJoinPool(Runtime.getRuntime().availableProcessors()), false);
+    }
+
+    public static ComputePool shared() {
+        return Shared.INSTANCE;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    //Runs a fork-join task to completion, rethrowing anything it threw
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return pool.invoke(task);
+    }
+
+    //The pool as an ExecutorService, for APIs such as Seeding that take one
+    //Shutting it down directly bypasses close() and breaks every other user of the pool
+    public ExecutorService executor() {
+        return pool;
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    //Waits for running tasks to finish, does nothing for the shared pool
+    @Override
+    public void close() {
+        if (!owned) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
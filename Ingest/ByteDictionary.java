@@ -0,0 +1,72 @@
+package Ingest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//Chunk-local dictionary of the distinct values of one categorical column, keyed by their raw bytes
+//A lookup hashes and compares the bytes in place, so only a value seen for the first time allocates
+//Ids are handed out in order of first appearance and mapped to the column's global codes when the chunks are merged
+final class ByteDictionary {
+    private byte[][] values = new byte[8][];
+    private int[] table = new int[16]; // Open addressing, id + 1 per slot, 0 when empty
+    private int size;
+
+    //Id of bytes [start, end), adding them if they are new
+    int intern(byte[] bytes, int start, int end) {
+        int hash = hash(bytes, start, end);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                break;
+            }
+            byte[] value = values[entry - 1];
+            if (Arrays.equals(value, 0, value.length, bytes, start, end)) {
+                return entry - 1;
+            }
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = Arrays.copyOfRange(bytes, start, end);
+        size++;
+        if (2 * size > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(size - 1, hash);
+        }
+        return size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String value(int id) {
+        return new String(values[id], StandardCharsets.UTF_8);
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            insert(id, hash(values[id], 0, values[id].length));
+        }
+    }
+
+    private void insert(int id, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    //FNV-1a
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,50 @@
+package Ingest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+//Maps the categories of a column to the codes 0, 1, 2, ... stored in its numeric column
+//The order is either given explicitly, e.g. new CategoricalEncoder("No", "Yes") for No = 0 and Yes = 1,
+//or, when the reader discovers the categories itself, the sorted order, so the codes do not depend on how the file was split
+public final class CategoricalEncoder {
+    private final String[] categories;
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    public CategoricalEncoder(String... categories) {
+        this.categories = categories.clone();
+        for (int i = 0; i < categories.length; i++) {
+            if (codes.put(categories[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate category \"" + categories[i] + "\".");
+            }
+        }
+    }
+
+    public static CategoricalEncoder sorted(Collection<String> categories) {
+        return new CategoricalEncoder(new TreeSet<>(categories).toArray(new String[0]));
+    }
+
+    //Code of a category, -1 if it is not one of them
+    public int code(String category) {
+        Integer code = codes.get(category);
+        return code == null ? -1 : code;
+    }
+
+    public String category(int code) {
+        return categories[code];
+    }
+
+    public int size() {
+        return categories.length;
+    }
+
+    public String[] categories() {
+        return categories.clone();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(categories);
+    }
+}
@@ -0,0 +1,479 @@
+package Ingest;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import Compute.ComputePool;
+
+//Parallel CSV reader producing a columnar Dataset
+//The file is cut into byte ranges that each end just after a newline, and every range is read and parsed by its own task:
+//numbers go through NumberParser without a String per field, categorical values through a chunk-local ByteDictionary
+//The chunks are then merged: categories get their global codes and each chunk's values are copied into the final columns
+//A column is categorical if its value in the first data row is not a number, or if marked with setCategorical or setEncoder
+//Empty numeric fields are read as NaN; fields may be wrapped in double quotes, but a quoted field cannot contain a newline
+public class CsvReader {
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 64 << 20;
+    private static final int PROBE_BYTES = 1 << 16; // Read size when looking for a line end
+
+    private final Path path;
+    private byte delimiter = ',';
+    private boolean header = true; // Whether the first line holds the column names
+    private ComputePool pool = ComputePool.shared();
+    private long chunkBytes; // 0 picks a size from the file size and parallelism
+    private final Map<Integer, CategoricalEncoder> encoders = new HashMap<>();
+    private final Set<Integer> categorical = new HashSet<>();
+
+    public CsvReader(Path path) {
+        this.path = path;
+    }
+
+    public void setDelimiter(char delimiter) {
+        if (delimiter > 127 || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Delimiter must be an ASCII character other than a quote or a line end.");
+        }
+        this.delimiter = (byte) delimiter;
+    }
+
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    public void setPool(ComputePool pool) {
+        this.pool = pool;
+    }
+
+    public void setChunkBytes(long chunkBytes) {
+        if (chunkBytes <= 0 || chunkBytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Chunk size must be positive and below 2GB.");
+        }
+        this.chunkBytes = chunkBytes;
+    }
+
+    //Reads the column as categorical with the encoder's codes, a value not in the encoder is an error
+    public void setEncoder(int column, CategoricalEncoder encoder) {
+        encoders.put(column, encoder);
+    }
+
+    //Reads the column as categorical, with the sorted distinct values as its categories
+    public void setCategorical(int column) {
+        categorical.add(column);
+    }
+
+    //Reads from the binary cache when it was written for the current version of the CSV with the same settings,
+    //otherwise parses and rewrites it
+    public Dataset readCached(Path cache) throws IOException {
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        byte[] settings = settings();
+        if (Files.exists(cache)) {
+            Dataset cached = DatasetCache.read(cache, size, modified, settings);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Dataset dataset = read();
+        DatasetCache.write(cache, dataset, size, modified, settings);
+        return dataset;
+    }
+
+    //Everything that changes how the same file is parsed: delimiter, header flag, categorical columns,
+    //and every fixed encoder with its categories in code order, columns sorted so equal settings give equal bytes
+    private byte[] settings() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(delimiter);
+            out.writeBoolean(header);
+            Set<Integer> columns = new TreeSet<>(categorical);
+            out.writeInt(columns.size());
+            for (int column : columns) {
+                out.writeInt(column);
+            }
+            Map<Integer, CategoricalEncoder> fixed = new TreeMap<>(encoders);
+            out.writeInt(fixed.size());
+            for (Map.Entry<Integer, CategoricalEncoder> entry : fixed.entrySet()) {
+                out.writeInt(entry.getKey());
+                String[] categories = entry.getValue().categories();
+                out.writeInt(categories.length);
+                for (String category : categories) {
+                    out.writeUTF(category);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public Dataset read() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Header and first data row fix the column names and types
+            long dataStart = 0;
+            String[] names = null;
+            if (header) {
+                long headerEnd = lineEnd(channel, 0, size);
+                byte[] line = read(channel, 0, headerEnd);
+                names = splitLine(line, 0, trimLineEnd(line, 0, line.length));
+                dataStart = Math.min(size, headerEnd + 1);
+            }
+            long firstEnd = lineEnd(channel, dataStart, size);
+            byte[] first = read(channel, dataStart, firstEnd);
+            String[] firstRow = splitLine(first, 0, trimLineEnd(first, 0, first.length));
+            int numColumns = names != null ? names.length : firstRow.length;
+            if (names == null) {
+                names = new String[numColumns];
+                for (int c = 0; c < numColumns; c++) {
+                    names[c] = "column" + c;
+                }
+            }
+            String[] columnNames = names;
+            boolean[] isCategorical = new boolean[numColumns];
+            for (int c = 0; c < numColumns; c++) {
+                byte[] value = c < firstRow.length ? firstRow[c].getBytes(StandardCharsets.UTF_8) : new byte[0];
+                isCategorical[c] = encoders.containsKey(c) || categorical.contains(c)
+                        || (value.length > 0 && !NumberParser.isNumber(value, 0, value.length));
+            }
+
+            List<Future<Chunk>> futures = new ArrayList<>();
+            long[] bounds = chunkBounds(channel, dataStart, size);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                futures.add(pool.submit(() -> parseChunk(channel, start, end, columnNames, isCategorical)));
+            }
+            Chunk[] chunks = new Chunk[futures.size()];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = get(futures.get(i));
+            }
+            return merge(chunks, columnNames, isCategorical);
+        }
+    }
+
+    //Chunk boundaries from dataStart to size, every one but the first just after a newline
+    private long[] chunkBounds(FileChannel channel, long dataStart, long size) throws IOException {
+        long target = chunkBytes > 0 ? chunkBytes
+                : Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, (size - dataStart) / (4L * pool.parallelism()) + 1));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        long previous = dataStart;
+        while (previous < size) {
+            long next = previous + target >= size ? size : Math.min(size, lineEnd(channel, previous + target - 1, size) + 1);
+            bounds.add(next);
+            previous = next;
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    //Position of the first newline at or after from, or size if there is none
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_BYTES);
+        for (long position = from; position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static byte[] read(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE - 8) {
+            throw new IOException("Line or chunk longer than 2GB.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        return buffer.array();
+    }
+
+    //Parsed values of one byte range: numeric columns as doubles, categorical ones as ids into the chunk's dictionaries
+    private static final class Chunk {
+        final double[][] numbers;
+        final int[][] ids;
+        final ByteDictionary[] dictionaries;
+        int rows;
+
+        Chunk(boolean[] isCategorical) {
+            int numColumns = isCategorical.length;
+            numbers = new double[numColumns][];
+            ids = new int[numColumns][];
+            dictionaries = new ByteDictionary[numColumns];
+            for (int c = 0; c < numColumns; c++) {
+                if (isCategorical[c]) {
+                    ids[c] = new int[256];
+                    dictionaries[c] = new ByteDictionary();
+                } else {
+                    numbers[c] = new double[256];
+                }
+            }
+        }
+
+        void grow() {
+            for (int c = 0; c < numbers.length; c++) {
+                if (numbers[c] != null) {
+                    numbers[c] = Arrays.copyOf(numbers[c], numbers[c].length * 2);
+                } else {
+                    ids[c] = Arrays.copyOf(ids[c], ids[c].length * 2);
+                }
+            }
+        }
+
+        int capacity() {
+            return numbers[0] != null ? numbers[0].length : ids[0].length;
+        }
+    }
+
+    private Chunk parseChunk(FileChannel channel, long start, long end, String[] names, boolean[] isCategorical)
+            throws IOException {
+        byte[] bytes = read(channel, start, end);
+        int numColumns = isCategorical.length;
+        Chunk chunk = new Chunk(isCategorical);
+        int position = 0;
+        while (position < bytes.length) {
+            int lineEnd = position;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int lineStop = trimLineEnd(bytes, position, lineEnd);
+            if (!isBlank(bytes, position, lineStop)) {
+                if (chunk.rows == chunk.capacity()) {
+                    chunk.grow();
+                }
+                int row = chunk.rows;
+                int field = position;
+                for (int c = 0; c < numColumns; c++) {
+                    if (field > lineStop) {
+                        throw fieldCount(start + position, c, numColumns);
+                    }
+                    // Field is [from, to), the next one starts after the delimiter at next
+                    int from = field;
+                    int to;
+                    int next;
+                    if (field < lineStop && bytes[field] == '"') {
+                        from = field + 1;
+                        to = from;
+                        while (to < lineStop && bytes[to] != '"') {
+                            to++;
+                        }
+                        next = to + 1;
+                        while (next < lineStop && bytes[next] != delimiter) {
+                            next++;
+                        }
+                    } else {
+                        to = field;
+                        while (to < lineStop && bytes[to] != delimiter) {
+                            to++;
+                        }
+                        next = to;
+                    }
+                    if (isCategorical[c]) {
+                        while (from < to && bytes[from] == ' ') {
+                            from++;
+                        }
+                        while (to > from && bytes[to - 1] == ' ') {
+                            to--;
+                        }
+                        chunk.ids[c][row] = chunk.dictionaries[c].intern(bytes, from, to);
+                    } else if (isBlank(bytes, from, to)) {
+                        chunk.numbers[c][row] = Double.NaN;
+                    } else {
+                        try {
+                            chunk.numbers[c][row] = NumberParser.parseDouble(bytes, from, to);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Column " + names[c] + " is numeric but has \""
+                                    + new String(bytes, from, to - from, StandardCharsets.UTF_8) + "\" at byte "
+                                    + (start + from) + ", mark it with setCategorical.", e);
+                        }
+                    }
+                    field = next + 1;
+                }
+                if (field <= lineStop) {
+                    throw fieldCount(start + position, numColumns + 1, numColumns);
+                }
+                chunk.rows++;
+            }
+            position = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    //Gives categorical columns their global codes and copies every chunk into its rows of the final columns
+    private Dataset merge(Chunk[] chunks, String[] names, boolean[] isCategorical) throws IOException {
+        int numColumns = names.length;
+        int[] offsets = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            long total = (long) offsets[i] + chunks[i].rows;
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("File holds more than " + Integer.MAX_VALUE + " rows.");
+            }
+            offsets[i + 1] = (int) total;
+        }
+        CategoricalEncoder[] columnEncoders = new CategoricalEncoder[numColumns];
+        int[][][] codes = new int[numColumns][][]; // codes[c][chunk][local id]
+        for (int c = 0; c < numColumns; c++) {
+            if (!isCategorical[c]) {
+                continue;
+            }
+            CategoricalEncoder encoder = encoders.get(c);
+            if (encoder == null) {
+                Set<String> values = new TreeSet<>();
+                for (Chunk chunk : chunks) {
+                    for (int id = 0; id < chunk.dictionaries[c].size(); id++) {
+                        values.add(chunk.dictionaries[c].value(id));
+                    }
+                }
+                encoder = CategoricalEncoder.sorted(values);
+            }
+            columnEncoders[c] = encoder;
+            codes[c] = new int[chunks.length][];
+            for (int i = 0; i < chunks.length; i++) {
+                ByteDictionary dictionary = chunks[i].dictionaries[c];
+                codes[c][i] = new int[dictionary.size()];
+                for (int id = 0; id < dictionary.size(); id++) {
+                    int code = encoder.code(dictionary.value(id));
+                    if (code < 0) {
+                        throw new IllegalArgumentException("Column " + names[c] + " has \"" + dictionary.value(id)
+                                + "\", which is not one of the categories " + encoder + ".");
+                    }
+                    codes[c][i][id] = code;
+                }
+            }
+        }
+
+        int rows = offsets[chunks.length];
+        double[][] columns = new double[numColumns][rows];
+        List<Future<Void>> copies = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            int index = i;
+            copies.add(pool.submit(() -> {
+                Chunk chunk = chunks[index];
+                int offset = offsets[index];
+                for (int c = 0; c < numColumns; c++) {
+                    if (isCategorical[c]) {
+                        int[] ids = chunk.ids[c];
+                        int[] map = codes[c][index];
+                        double[] column = columns[c];
+                        for (int r = 0; r < chunk.rows; r++) {
+                            column[offset + r] = map[ids[r]];
+                        }
+                    } else {
+                        System.arraycopy(chunk.numbers[c], 0, columns[c], offset, chunk.rows);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> copy : copies) {
+            get(copy);
+        }
+        return new Dataset(names, columns, columnEncoders);
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    //Splits one line for the header and the first row, which are read once and may allocate
+    private String[] splitLine(byte[] bytes, int start, int end) {
+        List<String> fields = new ArrayList<>();
+        int field = start;
+        while (field <= end) {
+            int from = field;
+            int to;
+            int next;
+            if (field < end && bytes[field] == '"') {
+                from = field + 1;
+                to = from;
+                while (to < end && bytes[to] != '"') {
+                    to++;
+                }
+                next = to + 1;
+                while (next < end && bytes[next] != delimiter) {
+                    next++;
+                }
+            } else {
+                to = field;
+                while (to < end && bytes[to] != delimiter) {
+                    to++;
+                }
+                next = to;
+            }
+            int[] trimmed = trim(bytes, from, to);
+            fields.add(new String(bytes, trimmed[0], trimmed[1] - trimmed[0], StandardCharsets.UTF_8));
+            field = next + 1;
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private static int trimLineEnd(byte[] bytes, int start, int end) {
+        return end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private static int[] trim(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        return new int[] {start, end};
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException fieldCount(long offset, int found, int expected) {
+        return new IllegalArgumentException("Line at byte " + offset + " has " + (found < expected ? "fewer" : "more")
+                + " than " + expected + " fields.");
+    }
+}
@@ -0,0 +1,164 @@
+package Ingest;
+import java.util.Arrays;
+import KMeans.KMeansData;
+
+//Columnar table produced by CsvReader: one double[] per column, column c of row i at column(c)[i]
+//Categorical columns hold the codes of their CategoricalEncoder, missing numbers are NaN
+//toRows and toKMeansData copy the chosen columns into the row layouts taken by the regression and K-Means classes
+public final class Dataset {
+    private final String[] names;
+    private final double[][] columns;
+    private final CategoricalEncoder[] encoders; // Null for numeric columns
+    private final int rows;
+
+    public Dataset(String[] names, double[][] columns, CategoricalEncoder[] encoders) {
+        if (names.length != columns.length || encoders.length != columns.length) {
+            throw new IllegalArgumentException("Names, columns and encoders must have the same length.");
+        }
+        this.rows = columns.length == 0 ? 0 : columns[0].length;
+        for (double[] column : columns) {
+            if (column.length != rows) {
+                throw new IllegalArgumentException("All columns must have the same number of rows.");
+            }
+        }
+        this.names = names.clone();
+        this.columns = columns.clone();
+        this.encoders = encoders.clone();
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    public String name(int column) {
+        return names[column];
+    }
+
+    public String[] names() {
+        return names.clone();
+    }
+
+    //Index of the column with the given name, -1 if there is none
+    public int indexOf(String name) {
+        for (int c = 0; c < names.length; c++) {
+            if (names[c].equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    //The column's values, shared with this dataset rather than copied
+    public double[] column(int column) {
+        return columns[column];
+    }
+
+    public boolean isCategorical(int column) {
+        return encoders[column] != null;
+    }
+
+    //Encoder of a categorical column, null for a numeric one
+    public CategoricalEncoder encoder(int column) {
+        return encoders[column];
+    }
+
+    //Row-major copy of the given columns, the double[][] X taken by LinearRegression
+    public double[][] toRows(int... selected) {
+        double[][] result = new double[rows][selected.length];
+        for (int j = 0; j < selected.length; j++) {
+            double[] column = columns[selected[j]];
+            for (int i = 0; i < rows; i++) {
+                result[i][j] = column[i];
+            }
+        }
+        return result;
+    }
+
+    public double[][] toRows() {
+        return toRows(allColumns());
+    }
+
+    //Every column except the target, in order
+    public double[][] features(int target) {
+        int[] selected = new int[columns.length - 1];
+        for (int c = 0, j = 0; c < columns.length; c++) {
+            if (c != target) {
+                selected[j++] = c;
+            }
+        }
+        return toRows(selected);
+    }
+
+    public double[] target(int column) {
+        return columns[column].clone();
+    }
+
+    //The given columns in the flat row-major layout of KMeansData
+    public KMeansData toKMeansData(int... selected) {
+        int dims = selected.length;
+        double[] values = new double[rows * dims];
+        for (int j = 0; j < dims; j++) {
+            double[] column = columns[selected[j]];
+            for (int i = 0; i < rows; i++) {
+                values[i * dims + j] = column[i];
+            }
+        }
+        return new KMeansData(values, rows, dims);
+    }
+
+    public KMeansData toKMeansData() {
+        return toKMeansData(allColumns());
+    }
+
+    //Replaces a categorical column by one 0/1 indicator column per category, named column=category
+    //The other columns are shared with this dataset
+    public Dataset oneHot(int column) {
+        CategoricalEncoder encoder = encoders[column];
+        if (encoder == null) {
+            throw new IllegalArgumentException("Column " + names[column] + " is not categorical.");
+        }
+        int width = encoder.size();
+        int count = columns.length - 1 + width;
+        String[] newNames = new String[count];
+        double[][] newColumns = new double[count][];
+        CategoricalEncoder[] newEncoders = new CategoricalEncoder[count];
+        int out = 0;
+        for (int c = 0; c < columns.length; c++) {
+            if (c != column) {
+                newNames[out] = names[c];
+                newColumns[out] = columns[c];
+                newEncoders[out] = encoders[c];
+                out++;
+                continue;
+            }
+            double[] codes = columns[c];
+            for (int k = 0; k < width; k++) {
+                double[] indicator = new double[rows];
+                for (int i = 0; i < rows; i++) {
+                    indicator[i] = codes[i] == k ? 1 : 0;
+                }
+                newNames[out] = names[c] + "=" + encoder.category(k);
+                newColumns[out] = indicator;
+                out++;
+            }
+        }
+        return new Dataset(newNames, newColumns, newEncoders);
+    }
+
+    private int[] allColumns() {
+        int[] selected = new int[columns.length];
+        for (int c = 0; c < selected.length; c++) {
+            selected[c] = c;
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return rows + " rows x " + Arrays.toString(names);
+    }
+}
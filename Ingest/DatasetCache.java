@@ -0,0 +1,150 @@
+package Ingest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//Compact binary copy of a Dataset, so a re-run reads the columns back instead of parsing the CSV again
+//Layout: magic, version, header length, then the header (source size and modification time, the reader settings,
+//rows, columns, and each column's name and categories), then every column as rows little-endian doubles
+//The source size and time let CsvReader.readCached notice that the CSV changed and the cache is stale,
+//and the settings (an opaque encoding by the reader) that the same CSV would now be parsed differently
+public final class DatasetCache {
+    private static final int MAGIC = 0x50444D43; // "PDMC"
+    private static final int VERSION = 2;
+    private static final int PREFIX_BYTES = 3 * Integer.BYTES;
+
+    private DatasetCache() {
+    }
+
+    public static void write(Path file, Dataset dataset, long sourceSize, long sourceModified, byte[] settings)
+            throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream header = new DataOutputStream(headerBytes)) {
+            header.writeLong(sourceSize);
+            header.writeLong(sourceModified);
+            header.writeInt(settings.length);
+            header.write(settings);
+            header.writeInt(dataset.rows());
+            header.writeInt(dataset.numColumns());
+            for (int c = 0; c < dataset.numColumns(); c++) {
+                header.writeUTF(dataset.name(c));
+                CategoricalEncoder encoder = dataset.encoder(c);
+                header.writeInt(encoder == null ? -1 : encoder.size());
+                if (encoder != null) {
+                    for (String category : encoder.categories()) {
+                        header.writeUTF(category);
+                    }
+                }
+            }
+        }
+        ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        prefix.putInt(MAGIC).putInt(VERSION).putInt(headerBytes.size()).flip();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, prefix);
+            writeFully(out, ByteBuffer.wrap(headerBytes.toByteArray()));
+            for (int c = 0; c < dataset.numColumns(); c++) {
+                double[] column = dataset.column(c);
+                for (int i = 0; i < column.length; ) {
+                    int count = Math.min(column.length - i, buffer.capacity() / Double.BYTES);
+                    buffer.clear();
+                    buffer.asDoubleBuffer().put(column, i, count);
+                    buffer.limit(count * Double.BYTES);
+                    writeFully(out, buffer);
+                    i += count;
+                }
+            }
+        }
+    }
+
+    //The cached dataset, or null if the file is not a cache or was written for a different version of the source
+    //or with different settings
+    public static Dataset read(Path file, long sourceSize, long sourceModified, byte[] settings) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < PREFIX_BYTES) {
+                return null;
+            }
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, prefix);
+            prefix.flip();
+            if (prefix.getInt() != MAGIC || prefix.getInt() != VERSION) {
+                return null;
+            }
+            int headerLength = prefix.getInt();
+            if (headerLength < 0 || PREFIX_BYTES + (long) headerLength > size) {
+                return null;
+            }
+            byte[] headerBytes = new byte[headerLength];
+            readFully(in, ByteBuffer.wrap(headerBytes));
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+            if (header.readLong() != sourceSize || header.readLong() != sourceModified) {
+                return null;
+            }
+            int settingsLength = header.readInt();
+            if (settingsLength != settings.length) {
+                return null;
+            }
+            byte[] written = new byte[settingsLength];
+            header.readFully(written);
+            if (!Arrays.equals(written, settings)) {
+                return null;
+            }
+            int rows = header.readInt();
+            int numColumns = header.readInt();
+            if (size != PREFIX_BYTES + headerBytes.length + (long) rows * numColumns * Double.BYTES) {
+                return null; // Truncated, for example by an interrupted write
+            }
+            String[] names = new String[numColumns];
+            CategoricalEncoder[] encoders = new CategoricalEncoder[numColumns];
+            for (int c = 0; c < numColumns; c++) {
+                names[c] = header.readUTF();
+                int categories = header.readInt();
+                if (categories >= 0) {
+                    String[] values = new String[categories];
+                    for (int k = 0; k < categories; k++) {
+                        values[k] = header.readUTF();
+                    }
+                    encoders[c] = new CategoricalEncoder(values);
+                }
+            }
+            double[][] columns = new double[numColumns][rows];
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int c = 0; c < numColumns; c++) {
+                double[] column = columns[c];
+                for (int i = 0; i < rows; ) {
+                    int count = Math.min(rows - i, buffer.capacity() / Double.BYTES);
+                    buffer.clear().limit(count * Double.BYTES);
+                    readFully(in, buffer);
+                    buffer.flip();
+                    buffer.asDoubleBuffer().get(column, i, count);
+                    i += count;
+                }
+            }
+            return new Dataset(names, columns, encoders);
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("Unexpected end of cache file.");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package Ingest;
+import java.nio.charset.StandardCharsets;
+
+//Parses decimal numbers straight out of a byte buffer without creating a String per field
+//Digits are accumulated into a long, and when the value has at most 15 significant digits and a decimal exponent
+//within +-22 it is one exact multiply or divide by a power of ten, which is correctly rounded (Clinger's fast path)
+//Anything else, such as long mantissas, huge exponents, NaN or Infinity, falls back to Double.parseDouble
+public final class NumberParser {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private NumberParser() {
+    }
+
+    //Value of bytes [start, end), surrounding spaces ignored; throws NumberFormatException if it is not a number
+    public static double parseDouble(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty number.");
+        }
+        int i = start;
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0; // Significant digits in the mantissa, leading zeros excluded
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < end && isDigit(bytes[i]); i++) {
+            anyDigit = true;
+            if (digits < 19) {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++; // Dropped digit, only the slow path can be exact now
+                digits++;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && isDigit(bytes[i]); i++) {
+                anyDigit = true;
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    digits++;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return slowPath(bytes, start, end);
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            if (i == end || !isDigit(bytes[i])) {
+                throw new NumberFormatException("Malformed exponent in \"" + text(bytes, start, end) + "\".");
+            }
+            int value = 0;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                if (value < 100000) {
+                    value = value * 10 + (bytes[i] - '0');
+                }
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != end) {
+            return slowPath(bytes, start, end);
+        }
+        if (digits > MAX_EXACT_DIGITS || exponent < -22 || exponent > 22) {
+            return slowPath(bytes, start, end);
+        }
+        double value = (double) mantissa;
+        value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    //True if bytes [start, end) parse as a number
+    public static boolean isNumber(byte[] bytes, int start, int end) {
+        try {
+            parseDouble(bytes, start, end);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static double slowPath(byte[] bytes, int start, int end) {
+        String text = text(bytes, start, end);
+        // Double.parseDouble also accepts hex floats and a trailing d or f, which are not CSV numbers
+        char last = text.charAt(text.length() - 1);
+        if (last == 'd' || last == 'D' || last == 'f' || last == 'F' || text.contains("x") || text.contains("X")) {
+            throw new NumberFormatException("Not a number: \"" + text + "\".");
+        }
+        return Double.parseDouble(text);
+    }
+
+    private static String text(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+}
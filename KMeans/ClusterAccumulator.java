@@ -0,0 +1,125 @@
+package KMeans;
+import java.util.Arrays;
+
+//Per-cluster coordinate sums and point counts for one assignment pass
+//Each task or chunk owns one accumulator for the whole fit and resets it when it starts its share of an iteration,
+//so the assignment step allocates nothing after the first iteration; ParallelKMeans_Partition keeps one per
+//fork-join chunk, whichever worker runs the chunk, and merges them in chunk order so the totals do not depend on scheduling
+//An accumulator can also hold changes rather than totals: move takes a point out of one cluster and into another,
+//and merging such deltas into the previous totals gives the new totals without adding every point again
+public class ClusterAccumulator {
+    private final int k; //Number of clusters
+    private final int dims; //Number of dimensions per data point
+    private final double[] sums; //Flat k x d sums, cluster i at [i * dims, (i + 1) * dims)
+    private final long[] counts; //Points assigned to each cluster
+    private double inertia; //Summed cost from each point to its cluster, only recorded for a KMeansListener
+    private long reassigned; //Points whose cluster changed
+
+    public ClusterAccumulator(int k, int dims) {
+        this.k = k;
+        this.dims = dims;
+        this.sums = new double[k * dims];
+        this.counts = new long[k];
+    }
+
+    public void reset() {
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        inertia = 0;
+        reassigned = 0;
+    }
+
+    //Clears the inertia and reassignment tallies but keeps the sums and counts, for totals carried across iterations
+    public void resetTallies() {
+        inertia = 0;
+        reassigned = 0;
+    }
+
+    public void add(KMeansData data, int row, int cluster) {
+        counts[cluster]++;
+        data.addRowTo(row, sums, cluster * dims);
+    }
+
+    //Adds the point at points[offset, offset + dims) to a cluster
+    public void add(double[] points, int offset, int cluster) {
+        counts[cluster]++;
+        int start = cluster * dims;
+        for (int j = 0; j < dims; j++) {
+            sums[start + j] += points[offset + j];
+        }
+    }
+
+    //Moves a point from one cluster to another, the counts of a delta accumulator may go negative
+    public void move(KMeansData data, int row, int from, int to) {
+        counts[from]--;
+        data.subtractRowFrom(row, sums, from * dims);
+        counts[to]++;
+        data.addRowTo(row, sums, to * dims);
+    }
+
+    //Records the cost of one assigned point and whether its cluster changed
+    public void record(double cost, boolean changed) {
+        inertia += cost;
+        if (changed) {
+            reassigned++;
+        }
+    }
+
+    //Adds another accumulator's sums and counts into this one
+    public void merge(ClusterAccumulator other) {
+        mergeTallies(other);
+        mergeClusters(other, 0, k);
+    }
+
+    //Adds the sums and counts of clusters [from, to) only, so tasks merging disjoint ranges never write the same entries
+    public void mergeClusters(ClusterAccumulator other, int from, int to) {
+        for (int i = from; i < to; i++) {
+            counts[i] += other.counts[i];
+        }
+        for (int i = from * dims; i < to * dims; i++) {
+            sums[i] += other.sums[i];
+        }
+    }
+
+    //Adds the inertia and reassignment tallies only
+    public void mergeTallies(ClusterAccumulator other) {
+        inertia += other.inertia;
+        reassigned += other.reassigned;
+    }
+
+    public long count(int cluster) {
+        return counts[cluster];
+    }
+
+    public double inertia() {
+        return inertia;
+    }
+
+    public long reassigned() {
+        return reassigned;
+    }
+
+    //Clusters with no points
+    public int emptyClusters() {
+        int empty = 0;
+        for (long count : counts) {
+            if (count == 0) {
+                empty++;
+            }
+        }
+        return empty;
+    }
+
+    //Writes the mean of a cluster into dest, returns false and leaves dest untouched when the cluster is empty
+    public boolean mean(int cluster, double[] dest) {
+        long count = counts[cluster];
+        if (count == 0) {
+            return false;
+        }
+        int offset = cluster * dims;
+        for (int j = 0; j < dims; j++) {
+            dest[j] = sums[offset + j] / count;
+        }
+        return true;
+    }
+}
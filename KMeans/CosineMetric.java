@@ -0,0 +1,102 @@
+package KMeans;
+
+//Cosine distance 1 - cos(x, c) for spherical K-Means
+//normalize keeps every centroid at unit length, so cos(x, c) = x . c / |x| with |x| from KMeansData.norms(),
+//and the nearest centroid is simply the one with the largest dot product: no norm is needed to assign a point
+//Not a metric (the triangle inequality fails), so the Hamerly strategy falls back to the full scan
+//A zero point is at distance 1 from every centroid and goes to centroid 0
+final class CosineMetric extends DistanceMetric {
+    static final CosineMetric INSTANCE = new CosineMetric();
+
+    private final DistanceKernel kernel = DistanceKernel.get();
+
+    @Override
+    public String name() {
+        return "cosine";
+    }
+
+    @Override
+    public double distance(KMeansData data, int row, double[] centroids, int c) {
+        double norm = data.norms()[row];
+        return norm == 0 ? 1 : 1 - dot(data, row, centroids, c * data.dims()) / norm;
+    }
+
+    @Override
+    public double distance(double[] points, int offset, double[] centroids, int c, int dims) {
+        double norm = Math.sqrt(kernel.dot(points, offset, points, offset, dims));
+        return norm == 0 ? 1 : 1 - kernel.dot(points, offset, centroids, c * dims, dims) / norm;
+    }
+
+    //Full cosine distance, neither vector needs to be normalized
+    @Override
+    public double distance(double[] a, double[] b) {
+        double norms = Math.sqrt(kernel.dot(a, 0, a, 0, a.length) * kernel.dot(b, 0, b, 0, b.length));
+        return norms == 0 ? 1 : 1 - kernel.dot(a, 0, b, 0, a.length) / norms;
+    }
+
+    @Override
+    public int nearest(KMeansData data, int row, double[] centroids, int k) {
+        int dims = data.dims();
+        int offset = row * dims;
+        int nearest = 0;
+        double maxDot = Double.NEGATIVE_INFINITY;
+        if (data.isFloat()) {
+            float[] values = data.floatValues();
+            for (int i = 0; i < k; i++) {
+                double dot = kernel.dot(values, offset, centroids, i * dims, dims);
+                if (dot > maxDot) {
+                    nearest = i;
+                    maxDot = dot;
+                }
+            }
+        } else {
+            double[] values = data.values();
+            for (int i = 0; i < k; i++) {
+                double dot = kernel.dot(values, offset, centroids, i * dims, dims);
+                if (dot > maxDot) {
+                    nearest = i;
+                    maxDot = dot;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public int nearest(double[] points, int offset, double[] centroids, int k, int dims) {
+        int nearest = 0;
+        double maxDot = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < k; i++) {
+            double dot = kernel.dot(points, offset, centroids, i * dims, dims);
+            if (dot > maxDot) {
+                nearest = i;
+                maxDot = dot;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public boolean isMetric() {
+        return false;
+    }
+
+    //Rescales to unit length, a zero centroid is left as it is
+    @Override
+    public void normalize(double[] centroid) {
+        double norm = Math.sqrt(kernel.dot(centroid, 0, centroid, 0, centroid.length));
+        if (norm > 0) {
+            for (int j = 0; j < centroid.length; j++) {
+                centroid[j] /= norm;
+            }
+        }
+    }
+
+    private double dot(KMeansData data, int row, double[] centroids, int centroidOffset) {
+        int dims = data.dims();
+        if (data.isFloat()) {
+            return kernel.dot(data.floatValues(), row * dims, centroids, centroidOffset, dims);
+        }
+        return kernel.dot(data.values(), row * dims, centroids, centroidOffset, dims);
+    }
+}
@@ -0,0 +1,159 @@
+package KMeans;
+
+//Squared Euclidean distance kernel shared by the K-Means variants, with the dot product and L1 distance used by the other metrics
+//Squared distances order points exactly like Euclidean distances, so the nearest centroid search never needs Math.sqrt
+//Centroids are passed flat, centroid i occupying [i * dims, (i + 1) * dims)
+//This scalar implementation is always available; get() returns a jdk.incubator.vector implementation when that module is loaded
+public class DistanceKernel {
+    private static final DistanceKernel SCALAR = new DistanceKernel();
+    private static final DistanceKernel DEFAULT = load();
+
+    DistanceKernel() {
+    }
+
+    //Best kernel for this JVM, the Vector API kernel unless the module is missing or -Dkmeans.vector=false
+    public static DistanceKernel get() {
+        return DEFAULT;
+    }
+
+    public static DistanceKernel scalar() {
+        return SCALAR;
+    }
+
+    public boolean isVectorized() {
+        return false;
+    }
+
+    public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            double diff = a[aOffset + j] - b[bOffset + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    public double squaredDistance(float[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            double diff = a[aOffset + j] - b[bOffset + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            sum += a[aOffset + j] * b[bOffset + j];
+        }
+        return sum;
+    }
+
+    public double dot(float[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            sum += a[aOffset + j] * b[bOffset + j];
+        }
+        return sum;
+    }
+
+    public double manhattanDistance(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            sum += Math.abs(a[aOffset + j] - b[bOffset + j]);
+        }
+        return sum;
+    }
+
+    public double manhattanDistance(float[] a, int aOffset, double[] b, int bOffset, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            sum += Math.abs(a[aOffset + j] - b[bOffset + j]);
+        }
+        return sum;
+    }
+
+    public double squaredDistance(double[] a, double[] b) {
+        return squaredDistance(a, 0, b, 0, a.length);
+    }
+
+    //Squared distance from a stored data point to centroid c
+    public double squaredDistance(KMeansData data, int row, double[] centroids, int c) {
+        int dims = data.dims();
+        if (data.isFloat()) {
+            return squaredDistance(data.floatValues(), row * dims, centroids, c * dims, dims);
+        }
+        return squaredDistance(data.values(), row * dims, centroids, c * dims, dims);
+    }
+
+    //Index of the nearest of the k centroids, ties going to the lowest index
+    public int nearest(KMeansData data, int row, double[] centroids, int k) {
+        int dims = data.dims();
+        int offset = row * dims;
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        if (data.isFloat()) {
+            float[] values = data.floatValues();
+            for (int i = 0; i < k; i++) {
+                double dist = squaredDistance(values, offset, centroids, i * dims, dims);
+                if (dist < minDistance) {
+                    nearest = i;
+                    minDistance = dist;
+                }
+            }
+        } else {
+            double[] values = data.values();
+            for (int i = 0; i < k; i++) {
+                double dist = squaredDistance(values, offset, centroids, i * dims, dims);
+                if (dist < minDistance) {
+                    nearest = i;
+                    minDistance = dist;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    //Index of the nearest of the k centroids to the point at points[offset, offset + dims)
+    public int nearest(double[] points, int offset, double[] centroids, int k, int dims) {
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < k; i++) {
+            double dist = squaredDistance(points, offset, centroids, i * dims, dims);
+            if (dist < minDistance) {
+                nearest = i;
+                minDistance = dist;
+            }
+        }
+        return nearest;
+    }
+
+    //Copies k x d centroids into the flat layout used by the kernel, reusing dest when it has the right size
+    public static double[] flatten(double[][] centroids, double[] dest) {
+        int dims = centroids[0].length;
+        if (dest == null || dest.length != centroids.length * dims) {
+            dest = new double[centroids.length * dims];
+        }
+        for (int i = 0; i < centroids.length; i++) {
+            System.arraycopy(centroids[i], 0, dest, i * dims, dims);
+        }
+        return dest;
+    }
+
+    //The Vector API is an incubator module, so the implementation is loaded reflectively
+    //and the scalar kernel is used when the module or the class cannot be loaded
+    private static DistanceKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("kmeans.vector", "true"))) {
+            return SCALAR;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (DistanceKernel) Class.forName("KMeans.VectorDistanceKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package KMeans;
+
+//How the K-Means classes measure the distance from a point to a centroid, squared Euclidean by default
+//Each metric is its own final class with its own nearest-centroid loop, so the loop compiled for a fit
+//calls a single implementation and the per-dimension kernel of DistanceKernel inlines into it
+//distance returns a cost that orders centroids exactly like the metric without its last transformation:
+//squared Euclidean distance, L1 distance, and 1 - cosine similarity
+//Centroids are passed flat like for DistanceKernel, centroid i occupying [i * dims, (i + 1) * dims)
+//The update step stays the mean of the assigned points for every metric; cosine then rescales it to unit length
+public abstract class DistanceMetric {
+    DistanceMetric() {
+    }
+
+    public static DistanceMetric euclidean() {
+        return EuclideanMetric.INSTANCE;
+    }
+
+    public static DistanceMetric manhattan() {
+        return ManhattanMetric.INSTANCE;
+    }
+
+    //Spherical K-Means: centroids are kept at unit length, so the cosine of a point and a centroid
+    //is their dot product divided by the point's precomputed norm
+    public static DistanceMetric cosine() {
+        return CosineMetric.INSTANCE;
+    }
+
+    //The metric with the given name(), as stored in a KMeansModel
+    public static DistanceMetric forName(String name) {
+        switch (name) {
+            case "euclidean":
+                return euclidean();
+            case "manhattan":
+                return manhattan();
+            case "cosine":
+                return cosine();
+            default:
+                throw new IllegalArgumentException("Unknown distance metric " + name + ".");
+        }
+    }
+
+    //Lower-case name, stable across versions since saved models refer to metrics by it
+    public abstract String name();
+
+    //Cost from a stored data point to centroid c
+    public abstract double distance(KMeansData data, int row, double[] centroids, int c);
+
+    //Cost from the point at points[offset, offset + dims) to centroid c
+    public abstract double distance(double[] points, int offset, double[] centroids, int c, int dims);
+
+    public abstract double distance(double[] a, double[] b);
+
+    //Index of the nearest of the k centroids, ties going to the lowest index
+    public abstract int nearest(KMeansData data, int row, double[] centroids, int k);
+
+    //Index of the nearest of the k centroids to the point at points[offset, offset + dims)
+    public abstract int nearest(double[] points, int offset, double[] centroids, int k, int dims);
+
+    //Whether toMetric of the cost obeys the triangle inequality, which the Hamerly bounds rely on
+    public boolean isMetric() {
+        return true;
+    }
+
+    //The metric distance for a cost returned by distance
+    public double toMetric(double cost) {
+        return cost;
+    }
+
+    //Applied to every centroid after seeding and after every update
+    public void normalize(double[] centroid) {
+    }
+
+    //Applies normalize to every centroid
+    public void normalize(double[][] centroids) {
+        for (double[] centroid : centroids) {
+            normalize(centroid);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package KMeans;
+
+//Squared Euclidean distance through DistanceKernel.get(), the Vector API kernel when it is available
+final class EuclideanMetric extends DistanceMetric {
+    static final EuclideanMetric INSTANCE = new EuclideanMetric();
+
+    private final DistanceKernel kernel = DistanceKernel.get();
+
+    @Override
+    public String name() {
+        return "euclidean";
+    }
+
+    @Override
+    public double distance(KMeansData data, int row, double[] centroids, int c) {
+        return kernel.squaredDistance(data, row, centroids, c);
+    }
+
+    @Override
+    public double distance(double[] points, int offset, double[] centroids, int c, int dims) {
+        return kernel.squaredDistance(points, offset, centroids, c * dims, dims);
+    }
+
+    @Override
+    public double distance(double[] a, double[] b) {
+        return kernel.squaredDistance(a, b);
+    }
+
+    @Override
+    public int nearest(KMeansData data, int row, double[] centroids, int k) {
+        return kernel.nearest(data, row, centroids, k);
+    }
+
+    @Override
+    public int nearest(double[] points, int offset, double[] centroids, int k, int dims) {
+        return kernel.nearest(points, offset, centroids, k, dims);
+    }
+
+    @Override
+    public double toMetric(double cost) {
+        return Math.sqrt(cost);
+    }
+}
@@ -0,0 +1,34 @@
+package KMeans;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+//Starts from centroids chosen beforehand, typically those of a saved KMeansModel, without reading the data
+class FixedSeeding implements Seeding {
+    private final double[][] centroids;
+
+    FixedSeeding(double[][] centroids) {
+        this.centroids = copy(centroids);
+    }
+
+    @Override
+    public double[][] seed(KMeansData data, int k, Random random, ExecutorService executor, int numPartitions) {
+        if (centroids.length != k) {
+            throw new IllegalArgumentException("Expected " + k + " initial centroids, got " + centroids.length + ".");
+        }
+        for (double[] centroid : centroids) {
+            if (centroid.length != data.dims()) {
+                throw new IllegalArgumentException("Initial centroids must have " + data.dims() + " dimensions.");
+            }
+        }
+        // A fresh copy every time, the caller updates the centroids it is given
+        return copy(centroids);
+    }
+
+    private static double[][] copy(double[][] centroids) {
+        double[][] result = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; i++) {
+            result[i] = centroids[i].clone();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package KMeans;
+
+//What one K-Means iteration did and how long it took, passed to a KMeansListener
+//Assignment time runs from submitting the tasks until the last one finished, reduction time from then until the
+//new centroids were computed; taskNanos holds each task's own run time, so a straggler stands out against the rest
+//Inertia is the summed cost (squared Euclidean distance by default) from every point to the centroid it was assigned to,
+//measured against the centroids used for the assignment
+public final class IterationStats {
+    private final int iteration;
+    private final long assignmentNanos;
+    private final long reductionNanos;
+    private final long[] taskNanos;
+    private final double inertia;
+    private final double shift;
+    private final long reassigned;
+    private final int emptyClusters;
+
+    IterationStats(int iteration, long assignmentNanos, long reductionNanos, long[] taskNanos, double inertia,
+                   double shift, long reassigned, int emptyClusters) {
+        this.iteration = iteration;
+        this.assignmentNanos = assignmentNanos;
+        this.reductionNanos = reductionNanos;
+        this.taskNanos = taskNanos;
+        this.inertia = inertia;
+        this.shift = shift;
+        this.reassigned = reassigned;
+        this.emptyClusters = emptyClusters;
+    }
+
+    //1 for the first iteration
+    public int getIteration() {
+        return iteration;
+    }
+
+    public long getAssignmentNanos() {
+        return assignmentNanos;
+    }
+
+    public long getReductionNanos() {
+        return reductionNanos;
+    }
+
+    //Run time of every assignment task, one entry per partition
+    //For the in-memory fit of ParallelKMeans_Partition, one entry per fork-join chunk in row order
+    public long[] getTaskNanos() {
+        return taskNanos.clone();
+    }
+
+    //Longest task time over the mean task time, 1 when the work was perfectly balanced
+    public double getImbalance() {
+        long max = 0;
+        long sum = 0;
+        for (long nanos : taskNanos) {
+            max = Math.max(max, nanos);
+            sum += nanos;
+        }
+        return sum == 0 ? 1 : (double) max * taskNanos.length / sum;
+    }
+
+    //For MiniBatchKMeans the inertia of the sampled batch only
+    public double getInertia() {
+        return inertia;
+    }
+
+    //Largest Euclidean distance any centroid moved, compared against the tolerance
+    public double getShift() {
+        return shift;
+    }
+
+    //Points whose centroid changed, every point in the first iteration; -1 for MiniBatchKMeans, which keeps no labels
+    public long getReassigned() {
+        return reassigned;
+    }
+
+    //Clusters that received no points and kept their previous centroid
+    public int getEmptyClusters() {
+        return emptyClusters;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("iteration %d: assignment %.3f ms, reduction %.3f ms, imbalance %.2f, inertia %.6g, shift %.6g, reassigned %d, empty %d",
+                iteration, assignmentNanos / 1e6, reductionNanos / 1e6, getImbalance(), inertia, shift, reassigned, emptyClusters);
+    }
+}
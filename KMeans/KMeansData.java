@@ -0,0 +1,188 @@
+package KMeans;
+
+//Dense n x d dataset stored as one contiguous row-major array
+//Point i occupies [i * dims, (i + 1) * dims), so a scan over a range of rows is a sequential read
+//Values are held either as doubles or, to halve the memory footprint, as floats
+public class KMeansData {
+    private final int rows; //Number of data points
+    private final int dims; //Number of dimensions per data point
+    private final double[] values; //Row-major values, null when stored as float
+    private final float[] floatValues; //Row-major values, null when stored as double
+    private volatile double[] norms; //L2 norm of every point, computed on first use
+
+    public KMeansData(double[] values, int rows, int dims) {
+        checkShape(values.length, rows, dims);
+        this.rows = rows;
+        this.dims = dims;
+        this.values = values;
+        this.floatValues = null;
+    }
+
+    public KMeansData(float[] values, int rows, int dims) {
+        checkShape(values.length, rows, dims);
+        this.rows = rows;
+        this.dims = dims;
+        this.values = null;
+        this.floatValues = values;
+    }
+
+    //Copies an array-of-arrays dataset into double storage
+    public static KMeansData of(double[][] data) {
+        int dims = checkRows(data);
+        double[] values = new double[data.length * dims];
+        for (int i = 0; i < data.length; i++) {
+            System.arraycopy(data[i], 0, values, i * dims, dims);
+        }
+        return new KMeansData(values, data.length, dims);
+    }
+
+    //Copies an array-of-arrays dataset into float storage
+    public static KMeansData ofFloats(double[][] data) {
+        int dims = checkRows(data);
+        float[] values = new float[data.length * dims];
+        for (int i = 0; i < data.length; i++) {
+            for (int j = 0; j < dims; j++) {
+                values[i * dims + j] = (float) data[i][j];
+            }
+        }
+        return new KMeansData(values, data.length, dims);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dims() {
+        return dims;
+    }
+
+    public boolean isFloat() {
+        return floatValues != null;
+    }
+
+    //Backing arrays, exposed so hot loops can index them directly
+    public double[] values() {
+        return values;
+    }
+
+    public float[] floatValues() {
+        return floatValues;
+    }
+
+    public double get(int row, int col) {
+        int index = row * dims + col;
+        return values != null ? values[index] : floatValues[index];
+    }
+
+    //Returns a copy of a single point
+    public double[] row(int row) {
+        double[] point = new double[dims];
+        copyRow(row, point);
+        return point;
+    }
+
+    public void copyRow(int row, double[] dest) {
+        copyRow(row, dest, 0);
+    }
+
+    //Copies a point into dest[destOffset, destOffset + dims)
+    public void copyRow(int row, double[] dest, int destOffset) {
+        int offset = row * dims;
+        if (values != null) {
+            System.arraycopy(values, offset, dest, destOffset, dims);
+        } else {
+            for (int j = 0; j < dims; j++) {
+                dest[destOffset + j] = floatValues[offset + j];
+            }
+        }
+    }
+
+    //Adds a point to dest[offset, offset + dims)
+    public void addRowTo(int row, double[] dest, int offset) {
+        int start = row * dims;
+        if (values != null) {
+            for (int j = 0; j < dims; j++) {
+                dest[offset + j] += values[start + j];
+            }
+        } else {
+            for (int j = 0; j < dims; j++) {
+                dest[offset + j] += floatValues[start + j];
+            }
+        }
+    }
+
+    //Subtracts a point from dest[offset, offset + dims)
+    public void subtractRowFrom(int row, double[] dest, int offset) {
+        int start = row * dims;
+        if (values != null) {
+            for (int j = 0; j < dims; j++) {
+                dest[offset + j] -= values[start + j];
+            }
+        } else {
+            for (int j = 0; j < dims; j++) {
+                dest[offset + j] -= floatValues[start + j];
+            }
+        }
+    }
+
+    //L2 norm of every point, computed once and shared by every later call
+    //The cosine metric divides by these instead of recomputing a point's norm for each centroid
+    //Two threads racing on the first call compute the same values, so the race is harmless
+    public double[] norms() {
+        double[] result = norms;
+        if (result == null) {
+            result = new double[rows];
+            DistanceKernel kernel = DistanceKernel.get();
+            for (int i = 0; i < rows; i++) {
+                int start = i * dims;
+                double sum = values != null ? kernel.dot(values, start, values, start, dims)
+                        : squaredNorm(floatValues, start, dims);
+                result[i] = Math.sqrt(sum);
+            }
+            norms = result;
+        }
+        return result;
+    }
+
+    //Splits the rows into numPartitions contiguous ranges of near-equal size
+    //Partition p covers rows [bounds[p], bounds[p + 1])
+    public int[] partitionBounds(int numPartitions) {
+        int parts = Math.max(1, Math.min(numPartitions, rows));
+        int[] bounds = new int[parts + 1];
+        for (int p = 0; p <= parts; p++) {
+            bounds[p] = (int) ((long) rows * p / parts);
+        }
+        return bounds;
+    }
+
+    private static double squaredNorm(float[] values, int start, int dims) {
+        double sum = 0;
+        for (int j = 0; j < dims; j++) {
+            double value = values[start + j];
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    private static void checkShape(int length, int rows, int dims) {
+        if (rows <= 0 || dims <= 0) {
+            throw new IllegalArgumentException("Dataset must have at least one row and one dimension.");
+        }
+        if ((long) rows * dims != length) {
+            throw new IllegalArgumentException("Array length does not match rows * dims.");
+        }
+    }
+
+    private static int checkRows(double[][] data) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Dataset must have at least one row and one dimension.");
+        }
+        int dims = data[0].length;
+        for (double[] point : data) {
+            if (point.length != dims) {
+                throw new IllegalArgumentException("All data points must have the same number of dimensions.");
+            }
+        }
+        return dims;
+    }
+}
@@ -0,0 +1,11 @@
+package KMeans;
+
+//Receives the statistics of every K-Means iteration, on the thread that called fit, after the iteration's centroids are computed
+//NONE is the default: with it the engines skip the inertia and reassignment bookkeeping and only read the clock
+//A listener should return quickly, the next iteration starts only when it does
+@FunctionalInterface
+public interface KMeansListener {
+    KMeansListener NONE = stats -> { };
+
+    void onIteration(IterationStats stats);
+}
@@ -0,0 +1,135 @@
+package KMeans;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//Fitted K-Means centroids and the metric they were fitted with, kept after the fit
+//A later job can assign new points with predict, or pass the model to a fit overload to warm-start from these
+//centroids instead of seeding, which on slowly drifting data converges in a few iterations
+//Binary layout: magic, version, metric name, k, dims, then the centroids row by row
+public final class KMeansModel {
+    private static final int MAGIC = 0x50444D4B; // "PDMK"
+    private static final int FORMAT_VERSION = 1;
+
+    private final double[][] centroids;
+    private final double[] flatCentroids; // Same centroids in the flat layout read by the metric
+    private final DistanceMetric metric;
+
+    public KMeansModel(double[][] centroids, DistanceMetric metric) {
+        if (centroids.length == 0) {
+            throw new IllegalArgumentException("A model needs at least one centroid.");
+        }
+        int dims = centroids[0].length;
+        this.centroids = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; i++) {
+            if (centroids[i].length != dims) {
+                throw new IllegalArgumentException("All centroids must have the same number of dimensions.");
+            }
+            this.centroids[i] = centroids[i].clone();
+        }
+        this.flatCentroids = DistanceKernel.flatten(this.centroids, null);
+        this.metric = metric;
+    }
+
+    //A copy of the centroids
+    public double[][] getCentroids() {
+        double[][] copy = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; i++) {
+            copy[i] = centroids[i].clone();
+        }
+        return copy;
+    }
+
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    public int k() {
+        return centroids.length;
+    }
+
+    public int dims() {
+        return centroids[0].length;
+    }
+
+    //Index of the nearest centroid to a point
+    public int predict(double[] point) {
+        if (point.length != dims()) {
+            throw new IllegalArgumentException("Point has " + point.length + " dimensions, expected " + dims() + ".");
+        }
+        return metric.nearest(point, 0, flatCentroids, centroids.length, point.length);
+    }
+
+    //Seeding that starts a fit of k clusters over dims-dimensional data from these centroids
+    //Checked up front so a model that does not fit the engine fails before any seeding or assignment
+    Seeding warmStart(int k, int dims, DistanceMetric metric) {
+        if (k() != k) {
+            throw new IllegalArgumentException("Model has " + k() + " centroids, the fit expects " + k + ".");
+        }
+        if (dims() != dims) {
+            throw new IllegalArgumentException("Model has " + dims() + " dimensions, the data has " + dims + ".");
+        }
+        if (!this.metric.name().equals(metric.name())) {
+            throw new IllegalArgumentException("Model was fitted with the " + this.metric.name()
+                    + " metric, the fit uses " + metric.name() + ".");
+        }
+        return Seeding.fixed(centroids);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(metric.name());
+        out.writeInt(k());
+        out.writeInt(dims());
+        for (double value : flatCentroids) {
+            out.writeDouble(value);
+        }
+    }
+
+    public static KMeansModel readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a K-Means model.");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported K-Means model format version " + version + ".");
+        }
+        DistanceMetric metric;
+        try {
+            metric = DistanceMetric.forName(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int k = in.readInt();
+        int dims = in.readInt();
+        if (k < 1 || dims < 1) {
+            throw new IOException("Corrupt K-Means model: " + k + " centroids of " + dims + " dimensions.");
+        }
+        double[][] centroids = new double[k][dims];
+        for (double[] centroid : centroids) {
+            for (int j = 0; j < dims; j++) {
+                centroid[j] = in.readDouble();
+            }
+        }
+        return new KMeansModel(centroids, metric);
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writeTo(out);
+        }
+    }
+
+    public static KMeansModel load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readFrom(in);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+//Scalable k-means|| (Bahmani et al.)
+//Instead of k sequential D^2 draws, each round samples every point independently with probability
+//oversampling * k * d^2(x) / cost, so a round is one parallel pass over the partitions
+//The weighted candidates are then reduced to k centroids with k-means++, which only touches the small candidate set
+class KMeansParallelSeeding implements Seeding {
+    private final int rounds; //Number of sampling rounds
+    private final double oversampling; //Expected candidates per round, as a multiple of k
+
+    KMeansParallelSeeding(int rounds, double oversampling) {
+        if (rounds < 1 || !(oversampling > 0)) {
+            throw new IllegalArgumentException("k-means|| needs at least one round and a positive oversampling factor.");
+        }
+        this.rounds = rounds;
+        this.oversampling = oversampling;
+    }
+
+    @Override
+    public double[][] seed(KMeansData data, int k, Random random, ExecutorService executor, int numPartitions) throws Exception {
+        int n = data.rows();
+        int dims = data.dims();
+        if (k > n) {
+            throw new IllegalArgumentException("Cannot choose " + k + " centroids from " + n + " data points.");
+        }
+        int[] bounds = data.partitionBounds(executor == null ? 1 : numPartitions);
+        double[] minDistances = new double[n];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+
+        List<Integer> candidateRows = new ArrayList<>();
+        int first = random.nextInt(n);
+        candidateRows.add(first);
+        double[] partitionSums = KMeansPlusPlusSeeding.updateDistances(data, data.row(first), 1, minDistances, bounds, executor);
+
+        for (int round = 0; round < rounds; round++) {
+            double cost = 0;
+            for (double sum : partitionSums) {
+                cost += sum;
+            }
+            if (!(cost > 0)) {
+                break; // Every point already coincides with a candidate
+            }
+            List<Integer> sampled = sampleCandidates(minDistances, oversampling * k / cost, bounds, random, executor);
+            if (sampled.isEmpty()) {
+                continue;
+            }
+            double[] newCandidates = new double[sampled.size() * dims];
+            for (int i = 0; i < sampled.size(); i++) {
+                data.copyRow(sampled.get(i), newCandidates, i * dims);
+            }
+            candidateRows.addAll(sampled);
+            partitionSums = KMeansPlusPlusSeeding.updateDistances(data, newCandidates, sampled.size(), minDistances, bounds, executor);
+        }
+
+        int m = candidateRows.size();
+        double[] candidates = new double[m * dims];
+        for (int i = 0; i < m; i++) {
+            data.copyRow(candidateRows.get(i), candidates, i * dims);
+        }
+        if (m <= k) {
+            return withRandomRows(data, candidates, candidateRows, k, random);
+        }
+        double[] weights = candidateWeights(data, candidates, m, bounds, executor);
+        return weightedPlusPlus(candidates, weights, m, dims, k, random);
+    }
+
+    //Each point joins the candidates with probability min(1, scale * d^2), every partition using its own Random
+    private List<Integer> sampleCandidates(double[] minDistances, double scale, int[] bounds, Random random,
+                                           ExecutorService executor) throws Exception {
+        int parts = bounds.length - 1;
+        // Seeds are drawn on the calling thread so the result does not depend on scheduling
+        long[] seeds = new long[parts];
+        for (int p = 0; p < parts; p++) {
+            seeds[p] = random.nextLong();
+        }
+        List<Integer> sampled = new ArrayList<>();
+        if (executor == null || parts == 1) {
+            for (int p = 0; p < parts; p++) {
+                sampled.addAll(sampleRange(minDistances, scale, bounds[p], bounds[p + 1], seeds[p]));
+            }
+            return sampled;
+        }
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            final int start = bounds[p];
+            final int end = bounds[p + 1];
+            final long seed = seeds[p];
+            Callable<List<Integer>> task = () -> sampleRange(minDistances, scale, start, end, seed);
+            results.add(executor.submit(task));
+        }
+        for (Future<List<Integer>> future : results) {
+            sampled.addAll(future.get());
+        }
+        return sampled;
+    }
+
+    private static List<Integer> sampleRange(double[] minDistances, double scale, int start, int end, long seed) {
+        Random random = new Random(seed);
+        List<Integer> sampled = new ArrayList<>();
+        for (int p = start; p < end; p++) {
+            if (random.nextDouble() < scale * minDistances[p]) {
+                sampled.add(p);
+            }
+        }
+        return sampled;
+    }
+
+    //Number of data points nearest to each candidate, counted per partition and summed
+    private static double[] candidateWeights(KMeansData data, double[] candidates, int m, int[] bounds,
+                                             ExecutorService executor) throws Exception {
+        int parts = bounds.length - 1;
+        double[] weights = new double[m];
+        List<Future<double[]>> results = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            final int start = bounds[p];
+            final int end = bounds[p + 1];
+            Callable<double[]> task = () -> {
+                DistanceKernel kernel = DistanceKernel.get();
+                double[] counts = new double[m];
+                for (int row = start; row < end; row++) {
+                    counts[kernel.nearest(data, row, candidates, m)]++;
+                }
+                return counts;
+            };
+            if (executor == null || parts == 1) {
+                double[] counts = task.call();
+                for (int i = 0; i < m; i++) {
+                    weights[i] += counts[i];
+                }
+            } else {
+                results.add(executor.submit(task));
+            }
+        }
+        for (Future<double[]> future : results) {
+            double[] counts = future.get();
+            for (int i = 0; i < m; i++) {
+                weights[i] += counts[i];
+            }
+        }
+        return weights;
+    }
+
+    //k-means++ over the weighted candidates, the probability of a candidate scaling with its weight
+    private static double[][] weightedPlusPlus(double[] candidates, double[] weights, int m, int dims, int k, Random random) {
+        DistanceKernel kernel = DistanceKernel.get();
+        double[][] centroids = new double[k][];
+        double[] minDistances = new double[m];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+        double[] scores = weights.clone();
+        for (int c = 0; c < k; c++) {
+            int chosen = sample(scores, random);
+            if (chosen < 0) {
+                chosen = random.nextInt(m); // Remaining candidates coincide with chosen centroids
+            }
+            centroids[c] = Arrays.copyOfRange(candidates, chosen * dims, (chosen + 1) * dims);
+            for (int i = 0; i < m; i++) {
+                minDistances[i] = Math.min(minDistances[i], kernel.squaredDistance(candidates, i * dims, centroids[c], 0, dims));
+                scores[i] = weights[i] * minDistances[i];
+            }
+        }
+        return centroids;
+    }
+
+    private static int sample(double[] scores, Random random) {
+        double total = 0;
+        for (double score : scores) {
+            total += score;
+        }
+        if (!(total > 0)) {
+            return -1;
+        }
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < scores.length; i++) {
+            target -= scores[i];
+            if (target < 0) {
+                return i;
+            }
+        }
+        for (int i = scores.length - 1; i >= 0; i--) {
+            if (scores[i] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Too few candidates were sampled (tiny or highly duplicated data), so top up with random rows that are not candidates
+    //The k - m extra rows are drawn among the n - m other rows, the i-th of which is found by skipping over the sorted candidates
+    private static double[][] withRandomRows(KMeansData data, double[] candidates, List<Integer> candidateRows, int k,
+                                             Random random) {
+        int dims = data.dims();
+        int m = candidateRows.size();
+        double[][] centroids = new double[k][];
+        for (int i = 0; i < m; i++) {
+            centroids[i] = Arrays.copyOfRange(candidates, i * dims, (i + 1) * dims);
+        }
+        int[] taken = new int[m];
+        for (int i = 0; i < m; i++) {
+            taken[i] = candidateRows.get(i);
+        }
+        Arrays.sort(taken);
+        int[] rows = RandomSeeding.distinctRows(data.rows() - m, k - m, random);
+        for (int i = m; i < k; i++) {
+            int row = rows[i - m];
+            for (int candidate : taken) {
+                if (candidate > row) {
+                    break;
+                }
+                row++;
+            }
+            centroids[i] = data.row(row);
+        }
+        return centroids;
+    }
+}
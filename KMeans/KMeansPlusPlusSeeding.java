@@ -0,0 +1,107 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+//k-means++ (Arthur and Vassilvitskii): D^2 weighted sampling of each new centroid
+//Keeps every point's squared distance to its nearest chosen centroid, so each new centroid costs one O(n*d) pass
+class KMeansPlusPlusSeeding implements Seeding {
+    @Override
+    public double[][] seed(KMeansData data, int k, Random random, ExecutorService executor, int numPartitions) throws Exception {
+        int n = data.rows();
+        if (k > n) {
+            throw new IllegalArgumentException("Cannot choose " + k + " centroids from " + n + " data points.");
+        }
+        int[] bounds = data.partitionBounds(executor == null ? 1 : numPartitions);
+        double[] minDistances = new double[n];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+
+        double[][] centroids = new double[k][];
+        centroids[0] = data.row(random.nextInt(n));
+        double[] partitionSums = updateDistances(data, centroids[0], 1, minDistances, bounds, executor);
+        for (int c = 1; c < k; c++) {
+            int row = sampleRow(minDistances, partitionSums, bounds, random);
+            if (row < 0) {
+                row = random.nextInt(n); // Every point coincides with a chosen centroid
+            }
+            centroids[c] = data.row(row);
+            partitionSums = updateDistances(data, centroids[c], 1, minDistances, bounds, executor);
+        }
+        return centroids;
+    }
+
+    //Lowers every point's squared distance to its nearest centroid given count new flat centroids
+    //Returns the sum of those distances for each partition
+    static double[] updateDistances(KMeansData data, double[] centroids, int count, double[] minDistances,
+                                    int[] bounds, ExecutorService executor) throws Exception {
+        int parts = bounds.length - 1;
+        double[] sums = new double[parts];
+        if (executor == null || parts == 1) {
+            for (int p = 0; p < parts; p++) {
+                sums[p] = updateRange(data, centroids, count, minDistances, bounds[p], bounds[p + 1]);
+            }
+            return sums;
+        }
+        List<Future<Double>> results = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            final int start = bounds[p];
+            final int end = bounds[p + 1];
+            Callable<Double> task = () -> updateRange(data, centroids, count, minDistances, start, end);
+            results.add(executor.submit(task));
+        }
+        for (int p = 0; p < parts; p++) {
+            sums[p] = results.get(p).get();
+        }
+        return sums;
+    }
+
+    private static double updateRange(KMeansData data, double[] centroids, int count, double[] minDistances, int start, int end) {
+        DistanceKernel kernel = DistanceKernel.get();
+        double sum = 0;
+        for (int p = start; p < end; p++) {
+            double min = minDistances[p];
+            for (int c = 0; c < count; c++) {
+                min = Math.min(min, kernel.squaredDistance(data, p, centroids, c));
+            }
+            minDistances[p] = min;
+            sum += min;
+        }
+        return sum;
+    }
+
+    //Draws a row with probability proportional to its weight, -1 when all weights are zero
+    //The partition sums locate the partition first so only one partition is scanned
+    static int sampleRow(double[] weights, double[] partitionSums, int[] bounds, Random random) {
+        double total = 0;
+        for (double sum : partitionSums) {
+            total += sum;
+        }
+        if (!(total > 0)) {
+            return -1;
+        }
+        double target = random.nextDouble() * total;
+        for (int p = 0; p < partitionSums.length; p++) {
+            if (target < partitionSums[p]) {
+                for (int row = bounds[p]; row < bounds[p + 1]; row++) {
+                    target -= weights[row];
+                    if (target < 0) {
+                        return row;
+                    }
+                }
+            } else {
+                target -= partitionSums[p];
+            }
+        }
+        // Rounding left target past the end, fall back to the last row with positive weight
+        for (int row = weights.length - 1; row >= 0; row--) {
+            if (weights[row] > 0) {
+                return row;
+            }
+        }
+        return -1;
+    }
+}
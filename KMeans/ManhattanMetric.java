@@ -0,0 +1,75 @@
+package KMeans;
+
+//L1 distance, the sum of absolute coordinate differences
+//A true metric, so the Hamerly bounds apply to it unchanged
+final class ManhattanMetric extends DistanceMetric {
+    static final ManhattanMetric INSTANCE = new ManhattanMetric();
+
+    private final DistanceKernel kernel = DistanceKernel.get();
+
+    @Override
+    public String name() {
+        return "manhattan";
+    }
+
+    @Override
+    public double distance(KMeansData data, int row, double[] centroids, int c) {
+        int dims = data.dims();
+        if (data.isFloat()) {
+            return kernel.manhattanDistance(data.floatValues(), row * dims, centroids, c * dims, dims);
+        }
+        return kernel.manhattanDistance(data.values(), row * dims, centroids, c * dims, dims);
+    }
+
+    @Override
+    public double distance(double[] points, int offset, double[] centroids, int c, int dims) {
+        return kernel.manhattanDistance(points, offset, centroids, c * dims, dims);
+    }
+
+    @Override
+    public double distance(double[] a, double[] b) {
+        return kernel.manhattanDistance(a, 0, b, 0, a.length);
+    }
+
+    @Override
+    public int nearest(KMeansData data, int row, double[] centroids, int k) {
+        int dims = data.dims();
+        int offset = row * dims;
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        if (data.isFloat()) {
+            float[] values = data.floatValues();
+            for (int i = 0; i < k; i++) {
+                double dist = kernel.manhattanDistance(values, offset, centroids, i * dims, dims);
+                if (dist < minDistance) {
+                    nearest = i;
+                    minDistance = dist;
+                }
+            }
+        } else {
+            double[] values = data.values();
+            for (int i = 0; i < k; i++) {
+                double dist = kernel.manhattanDistance(values, offset, centroids, i * dims, dims);
+                if (dist < minDistance) {
+                    nearest = i;
+                    minDistance = dist;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public int nearest(double[] points, int offset, double[] centroids, int k, int dims) {
+        int nearest = -1;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < k; i++) {
+            double dist = kernel.manhattanDistance(points, offset, centroids, i * dims, dims);
+            if (dist < minDistance) {
+                nearest = i;
+                minDistance = dist;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,159 @@
+package KMeans;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+//Dataset read straight from a memory-mapped binary file, for data that does not fit on the heap
+//The file is a headerless row-major array of little-endian doubles or floats, point i at [i * dims, (i + 1) * dims)
+//A single mapping is limited to 2GB, so the file is mapped as several chunks that each hold whole rows
+//Reads go through the page cache, the heap only ever holds the small blocks of rows being processed
+public class MappedKMeansData implements AutoCloseable {
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final int rows; //Number of data points
+    private final int dims; //Number of dimensions per data point
+    private final boolean floats; //Values stored as 4 byte floats instead of 8 byte doubles
+    private final int rowsPerChunk;
+    private final DoubleBuffer[] doubleChunks; //Null when stored as float
+    private final FloatBuffer[] floatChunks; //Null when stored as double
+
+    private MappedKMeansData(FileChannel channel, int dims, boolean floats) throws IOException {
+        long rowBytes = (long) dims * (floats ? Float.BYTES : Double.BYTES);
+        long size = channel.size();
+        if (dims <= 0 || size == 0 || size % rowBytes != 0) {
+            channel.close();
+            throw new IllegalArgumentException("File size is not a whole number of " + dims + "-dimensional rows.");
+        }
+        if (size / rowBytes > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IllegalArgumentException("File holds more than " + Integer.MAX_VALUE + " rows.");
+        }
+        this.channel = channel;
+        this.rows = (int) (size / rowBytes);
+        this.dims = dims;
+        this.floats = floats;
+        this.rowsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / rowBytes);
+
+        int numChunks = (rows + rowsPerChunk - 1) / rowsPerChunk;
+        doubleChunks = floats ? null : new DoubleBuffer[numChunks];
+        floatChunks = floats ? new FloatBuffer[numChunks] : null;
+        for (int c = 0; c < numChunks; c++) {
+            long first = (long) c * rowsPerChunk;
+            long count = Math.min(rowsPerChunk, rows - first);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, first * rowBytes, count * rowBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (floats) {
+                floatChunks[c] = buffer.asFloatBuffer();
+            } else {
+                doubleChunks[c] = buffer.asDoubleBuffer();
+            }
+        }
+    }
+
+    public static MappedKMeansData open(Path file, int dims, boolean floats) throws IOException {
+        return new MappedKMeansData(FileChannel.open(file, StandardOpenOption.READ), dims, floats);
+    }
+
+    //Writes a dataset in the format read by open
+    public static void write(Path file, double[][] data, boolean floats) throws IOException {
+        int dims = data[0].length;
+        int rowBytes = dims * (floats ? Float.BYTES : Double.BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(rowBytes, 1 << 16) / rowBytes * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (double[] point : data) {
+                if (buffer.remaining() < rowBytes) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                for (double value : point) {
+                    if (floats) {
+                        buffer.putFloat((float) value);
+                    } else {
+                        buffer.putDouble(value);
+                    }
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dims() {
+        return dims;
+    }
+
+    public boolean isFloat() {
+        return floats;
+    }
+
+    //Same contiguous split as KMeansData.partitionBounds, so each worker scans one byte range of the file
+    public int[] partitionBounds(int numPartitions) {
+        int parts = Math.max(1, Math.min(numPartitions, rows));
+        int[] bounds = new int[parts + 1];
+        for (int p = 0; p <= parts; p++) {
+            bounds[p] = (int) ((long) rows * p / parts);
+        }
+        return bounds;
+    }
+
+    //Copies rows [start, start + count) into dest as doubles, crossing chunk boundaries when needed
+    //Uses absolute reads only, so any number of threads can read concurrently
+    public void readRows(int start, int count, double[] dest) {
+        int written = 0;
+        while (count > 0) {
+            int chunk = start / rowsPerChunk;
+            int local = start - chunk * rowsPerChunk;
+            int take = Math.min(count, rowsPerChunk - local);
+            int length = take * dims;
+            if (floats) {
+                FloatBuffer buffer = floatChunks[chunk];
+                int index = local * dims;
+                for (int i = 0; i < length; i++) {
+                    dest[written + i] = buffer.get(index + i);
+                }
+            } else {
+                doubleChunks[chunk].get(local * dims, dest, written, length);
+            }
+            written += length;
+            start += take;
+            count -= take;
+        }
+    }
+
+    //Copies size distinct random rows into an in-heap dataset, used for seeding
+    public KMeansData sample(int size, Random random) {
+        size = Math.min(size, rows);
+        int[] sampled = RandomSeeding.distinctRows(rows, size, random);
+        double[] values = new double[size * dims];
+        double[] point = new double[dims];
+        for (int i = 0; i < size; i++) {
+            readRows(sampled[i], 1, point);
+            System.arraycopy(point, 0, values, i * dims, dims);
+        }
+        return new KMeansData(values, size, dims);
+    }
+
+    //Closes the file, the mappings themselves are released when the buffers are garbage collected
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
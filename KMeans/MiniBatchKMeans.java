@@ -0,0 +1,288 @@
+package KMeans;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.Arrays;
+import Compute.ComputePool;
+
+//Mini-batch K-Means (Sculley, "Web-Scale K-Means Clustering")
+//Each iteration samples batchSize points instead of scanning all n, assigns them in parallel,
+//and moves every centroid towards its points with a per-centroid learning rate of 1 / (points seen so far)
+//Stops when the smoothed batch inertia has not improved for maxNoImprovement consecutive batches
+public class MiniBatchKMeans implements AutoCloseable {
+    private int k; // Number of clusters
+    private int batchSize; // Points sampled per iteration
+    private int maxIterations; // Maximum number of batches
+    private double tolerance = 0.0; // Relative improvement in smoothed inertia that counts as progress
+    private int maxNoImprovement = 10; // Batches without progress before stopping
+    private ComputePool pool; // Workers, reused by every fit until shutdown
+    private boolean ownsPool; // Whether this instance created the pool, and so shuts it down
+    private int numThreads;
+    private double[][] centroids;
+    private double[] flatCentroids; // Centroids in the flat layout read by the distance kernel
+    private long[] seen; // Points assigned to each centroid over all batches, sets its learning rate
+    private DistanceMetric metric = DistanceMetric.euclidean();
+    private Seeding seeding = Seeding.kMeansPlusPlus();
+    private long seed;
+    private boolean seeded; // Whether setSeed was called
+    private KMeansListener listener = KMeansListener.NONE;
+    private int iterations; // Batches processed by the last fit
+    private boolean converged; // Whether the last fit stopped for lack of improvement rather than on maxIterations
+    private double inertia; // Smoothed mean distance per point at the end of the last fit, squared for Euclidean
+
+    public MiniBatchKMeans(int k, int batchSize, int maxIterations, int numThreads) {
+        this(k, batchSize, maxIterations, new ComputePool(numThreads));
+        this.ownsPool = true;
+    }
+
+    // Runs on an existing pool, which shutdown() leaves running
+    public MiniBatchKMeans(int k, int batchSize, int maxIterations, ComputePool pool) {
+        if (batchSize < pool.parallelism()) {
+            throw new IllegalArgumentException("Batch size must be at least the number of threads.");
+        }
+        this.k = k;
+        this.batchSize = batchSize;
+        this.maxIterations = maxIterations;
+        this.pool = pool;
+        this.numThreads = pool.parallelism();
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public void setMaxNoImprovement(int maxNoImprovement) {
+        this.maxNoImprovement = maxNoImprovement;
+    }
+
+    //Strategy used to choose the initial centroids, k-means++ by default
+    public void setSeeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+
+    //How a point's distance to a centroid is measured, squared Euclidean by default
+    //Seeding still weighs points by squared Euclidean distance, which for L2-normalized points is 2 * (1 - cosine)
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    //Called after every batch, KMeansListener.NONE to stop reporting
+    //A batch's inertia covers its sampled points only, and no reassignments are reported since no labels are kept
+    public void setListener(KMeansListener listener) {
+        this.listener = listener;
+    }
+
+    //Makes the seeding and the batch sampling reproducible
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
+    public void fit(double[][] data) throws Exception {
+        fit(KMeansData.of(data));
+    }
+
+    //Warm start: the fit begins from the model's centroids instead of seeding, which on data close to what the
+    //model was fitted on converges in a few iterations. The model must have k centroids of the data's dimensions
+    //and the engine's distance metric, otherwise IllegalArgumentException is thrown before anything runs
+    public void fit(double[][] data, KMeansModel start) throws Exception {
+        fit(KMeansData.of(data), start);
+    }
+
+    public void fit(KMeansData data, KMeansModel start) throws Exception {
+        fit(data, start.warmStart(k, data.dims(), metric));
+    }
+
+    public void fit(KMeansData data) throws Exception {
+        fit(data, seeding);
+    }
+
+    private void fit(KMeansData data, Seeding initial) throws Exception {
+        Random random = seeded ? new Random(seed) : new Random();
+        centroids = initial.seed(seedSample(data, random), k, random, pool.executor(), numThreads);
+        metric.normalize(centroids);
+        seen = new long[k];
+
+        // Every task samples its share of the batch into buffers reused for the whole fit
+        int[][] rows = new int[numThreads][];
+        int[][] labels = new int[numThreads][];
+        for (int t = 0; t < numThreads; t++) {
+            int share = batchSize / numThreads + (t < batchSize % numThreads ? 1 : 0);
+            rows[t] = new int[share];
+            labels[t] = new int[share];
+        }
+
+        // Exponentially weighted average of the batch inertia, smoothing out sampling noise
+        double alpha = Math.min(1.0, 2.0 * batchSize / (data.rows() + 1));
+        double smoothed = Double.NaN;
+        double best = Double.MAX_VALUE;
+        int noImprovement = 0;
+        boolean instrumented = listener != KMeansListener.NONE;
+        double[][] previous = instrumented ? new double[k][data.dims()] : null; // Centroids before the batch, for the shift
+        iterations = 0;
+        while (iterations < maxIterations && noImprovement < maxNoImprovement) {
+            flatCentroids = DistanceKernel.flatten(centroids, flatCentroids);
+            List<Future<Double>> results = new ArrayList<>();
+            long[] times = new long[numThreads];
+            long start = System.nanoTime();
+            for (int t = 0; t < numThreads; t++) {
+                final int task = t;
+                final int[] taskRows = rows[t];
+                final int[] taskLabels = labels[t];
+                final long taskSeed = random.nextLong();
+                results.add(pool.submit(() -> {
+                    long taskStart = System.nanoTime();
+                    double taskInertia = sampleAndAssign(data, taskRows, taskLabels, taskSeed);
+                    times[task] = System.nanoTime() - taskStart;
+                    return taskInertia;
+                }));
+            }
+            double batchInertia = 0;
+            for (Future<Double> future : results) {
+                batchInertia += future.get();
+            }
+            long assigned = System.nanoTime();
+            double summedInertia = batchInertia;
+            batchInertia /= batchSize;
+            if (instrumented) {
+                for (int i = 0; i < k; i++) {
+                    System.arraycopy(centroids[i], 0, previous[i], 0, centroids[i].length);
+                }
+            }
+
+            // Gradient step, applied in a fixed task order so a seeded fit is reproducible
+            for (int t = 0; t < numThreads; t++) {
+                for (int i = 0; i < rows[t].length; i++) {
+                    update(data, rows[t][i], labels[t][i]);
+                }
+            }
+            metric.normalize(centroids);
+            long reduced = System.nanoTime();
+
+            smoothed = Double.isNaN(smoothed) ? batchInertia : (1 - alpha) * smoothed + alpha * batchInertia;
+            if (smoothed < best * (1 - tolerance)) {
+                best = smoothed;
+                noImprovement = 0;
+            } else {
+                noImprovement++;
+            }
+            iterations++;
+            if (instrumented) {
+                listener.onIteration(new IterationStats(iterations, assigned - start, reduced - assigned, times,
+                        summedInertia, largestShift(previous), -1, emptyClusters(labels)));
+            }
+        }
+        converged = noImprovement >= maxNoImprovement;
+        inertia = smoothed;
+    }
+    //Draws rows uniformly with replacement, labels each with its nearest centroid, returns the summed distance
+    private double sampleAndAssign(KMeansData data, int[] rows, int[] labels, long taskSeed) {
+        Random random = new Random(taskSeed);
+        double inertia = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int row = random.nextInt(data.rows());
+            int nearest = metric.nearest(data, row, flatCentroids, k);
+            rows[i] = row;
+            labels[i] = nearest;
+            inertia += metric.distance(data, row, flatCentroids, nearest);
+        }
+        return inertia;
+    }
+    //Largest distance any centroid moved during the batch
+    private double largestShift(double[][] previous) {
+        DistanceKernel kernel = DistanceKernel.get();
+        double largest = 0;
+        for (int i = 0; i < k; i++) {
+            largest = Math.max(largest, kernel.squaredDistance(previous[i], centroids[i]));
+        }
+        return Math.sqrt(largest);
+    }
+    //Clusters that no point of the batch was assigned to
+    private int emptyClusters(int[][] labels) {
+        boolean[] hit = new boolean[k];
+        for (int[] taskLabels : labels) {
+            for (int label : taskLabels) {
+                hit[label] = true;
+            }
+        }
+        int empty = 0;
+        for (boolean h : hit) {
+            if (!h) {
+                empty++;
+            }
+        }
+        return empty;
+    }
+    //Moves a centroid towards a point with learning rate 1 / (points seen by that centroid)
+    private void update(KMeansData data, int row, int cluster) {
+        seen[cluster]++;
+        double eta = 1.0 / seen[cluster];
+        double[] centroid = centroids[cluster];
+        for (int j = 0; j < centroid.length; j++) {
+            centroid[j] += eta * (data.get(row, j) - centroid[j]);
+        }
+    }
+    //Seeding only needs a sample, 3 batches like the usual init size, so it does not scan the whole dataset
+    private KMeansData seedSample(KMeansData data, Random random) {
+        int size = Math.max(k, 3 * batchSize);
+        if (size >= data.rows()) {
+            return data;
+        }
+        double[] values = new double[size * data.dims()];
+        int[] sample = RandomSeeding.distinctRows(data.rows(), size, random);
+        for (int i = 0; i < size; i++) {
+            data.copyRow(sample[i], values, i * data.dims());
+        }
+        return new KMeansData(values, size, data.dims());
+    }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    //The centroids of the last fit with the engine's metric, to save or to warm-start a later fit
+    public KMeansModel getModel() {
+        if (centroids == null) {
+            throw new IllegalStateException("There is no model before the first fit.");
+        }
+        return new KMeansModel(centroids, metric);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    //False when the last fit stopped because it reached maxIterations
+    public boolean hasConverged() {
+        return converged;
+    }
+
+    public double getInertia() {
+        return inertia;
+    }
+
+    // Shuts down the pool if this instance created it
+    public void shutdown() {
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+    //Time Complexity: O(b*k*d/p) per iteration where b is the batch size, independent of n
+    //The centroid update is O(b*d) on the calling thread
+    public static void main(String[] args) throws Exception {
+        double[][] data = {{1, 2}, {1, 5}, {5, 8}, {8, 8}, {1, 0}, {9, 11}, {8, 2}, {10, 2}, {9, 3}};
+        MiniBatchKMeans kMeans = new MiniBatchKMeans(3, 4, 1000, 2);
+        kMeans.fit(data);
+        System.out.println("Centroids after " + kMeans.getIterations() + " batches:");
+        for (double[] centroid : kMeans.centroids) {
+            System.out.println(Arrays.toString(centroid));
+        }
+        kMeans.shutdown();
+    }
+}
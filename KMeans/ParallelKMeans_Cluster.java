@@ -3,119 +3,299 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.Arrays;
+import Compute.ComputePool;
 
-public class ParallelKMeans_Cluster {
+public class ParallelKMeans_Cluster implements AutoCloseable {
     private int k; //Number of clusters
     private int maxIterations; //Maximum number of iterations
     private double tolerance; //Convergence criterion
-    private ExecutorService executor;
+    private ComputePool pool; //Workers, reused by every fit until shutdown
+    private boolean ownsPool; //Whether this instance created the pool, and so shuts it down
     private double[][] centroids;
+    private int numThreads; //Number of threads
+    private boolean fused; //Assign every point once per iteration instead of once per cluster
+    private double[] flatCentroids; //Centroids in the flat layout read by the distance kernel
+    private DistanceKernel kernel = DistanceKernel.get(); //Measures how far centroids moved
+    private DistanceMetric metric = DistanceMetric.euclidean();
+    private ClusterAccumulator[] partials; //One accumulator per fused task, reused across iterations
+    private ClusterAccumulator total; //Merged accumulator, reused across iterations
+    private Seeding seeding = Seeding.kMeansPlusPlus();
+    private long seed;
+    private boolean seeded; //Whether setSeed was called
+    private KMeansListener listener = KMeansListener.NONE;
+    private int[] labels; //Cluster of every point, only kept for a listener by the fused strategy
+    private long[] taskNanos; //Run time of every task in the current iteration
+    private long assignmentNanos; //Phase times of the current iteration
+    private long reductionNanos;
+    private int emptyClusters; //Empty clusters of the current iteration, per-cluster strategy only
+    private int iterations; //Iterations run by the last fit
+    private boolean converged; //Whether the last fit stopped on the tolerance rather than on maxIterations
 
     public ParallelKMeans_Cluster(int k, int maxIterations, double tolerance, int numThreads) {
+        this(k, maxIterations, tolerance, numThreads, true);
+    }
+
+    //fused = false keeps the original strategy of one task per cluster, each scanning the whole dataset
+    public ParallelKMeans_Cluster(int k, int maxIterations, double tolerance, int numThreads, boolean fused) {
+        this(k, maxIterations, tolerance, new ComputePool(numThreads), fused);
+        this.ownsPool = true;
+    }
+
+    //Runs on an existing pool, which shutdown() leaves running
+    public ParallelKMeans_Cluster(int k, int maxIterations, double tolerance, ComputePool pool, boolean fused) {
         this.k = k;
         this.maxIterations = maxIterations;
         this.tolerance = tolerance;
-        this.executor = Executors.newFixedThreadPool(numThreads);
+        this.pool = pool;
+        this.numThreads = pool.parallelism();
+        this.fused = fused;
+    }
+
+    //Strategy used to choose the initial centroids, k-means++ by default
+    public void setSeeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+
+    //How a point's distance to a centroid is measured, squared Euclidean by default
+    //Seeding still weighs points by squared Euclidean distance, which for L2-normalized points is 2 * (1 - cosine)
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    //Called after every iteration, KMeansListener.NONE to stop reporting
+    //The per-cluster strategy reports times and empty clusters but no inertia or reassignments
+    public void setListener(KMeansListener listener) {
+        this.listener = listener;
+    }
+
+    //Makes the seeding reproducible, every later fit starts from the same random sequence
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
     }
 
     public void fit(double[][] data) throws Exception {
-        centroids = initializeCentroids(data); // Randomly initialize centroids
-        boolean convergence = false;
-        int iteration = 0;
+        fit(KMeansData.of(data));
+    }
+
+    //Warm start: the fit begins from the model's centroids instead of seeding, which on data close to what the
+    //model was fitted on converges in a few iterations. The model must have k centroids of the data's dimensions
+    //and the engine's distance metric, otherwise IllegalArgumentException is thrown before anything runs
+    public void fit(double[][] data, KMeansModel start) throws Exception {
+        fit(KMeansData.of(data), start);
+    }
+
+    public void fit(KMeansData data, KMeansModel start) throws Exception {
+        fit(data, start.warmStart(k, data.dims(), metric));
+    }
+
+    public void fit(KMeansData data) throws Exception {
+        fit(data, seeding);
+    }
+
+    private void fit(KMeansData data, Seeding initial) throws Exception {
+        centroids = initial.seed(data, k, newRandom(), pool.executor(), numThreads);
+        metric.normalize(centroids);
+        boolean instrumented = listener != KMeansListener.NONE;
+        labels = instrumented && fused ? newLabels(data.rows()) : null;
+        converged = false;
+        iterations = 0;
+        int[] bounds = data.partitionBounds(numThreads);
+        partials = new ClusterAccumulator[bounds.length - 1];
+        for (int t = 0; t < partials.length; t++) {
+            partials[t] = new ClusterAccumulator(k, data.dims());
+        }
+        total = new ClusterAccumulator(k, data.dims());
         
         //Clustering loop until convergence or maximum iterations
-        while (!convergence && iteration < maxIterations) {
-            double[][] newCentroids = new double[k][data[0].length];
-            List<Future<double[][]>> results = new ArrayList<>();
-
-            for (int i = 0; i < k; i++) {
-                final int clusterIndex = i;
-                //Submits task to assign data points to nearest centroid and calculate sum
-                //Parallelizes the assignment step by assigning one thread per cluster
-                Callable<double[][]> task = () -> assignAndSum(data, clusterIndex);
-                results.add(executor.submit(task));
+        while (!converged && iterations < maxIterations) {
+            flatCentroids = DistanceKernel.flatten(centroids, flatCentroids);
+            double[][] newCentroids = fused ? fusedIteration(data, bounds) : perClusterIteration(data);
+            double shift = largestShift(newCentroids);
+            converged = shift <= tolerance;
+            centroids = newCentroids;
+            iterations++;
+            if (instrumented) {
+                listener.onIteration(fused
+                        ? new IterationStats(iterations, assignmentNanos, reductionNanos, taskNanos, total.inertia(),
+                                shift, total.reassigned(), total.emptyClusters())
+                        : new IterationStats(iterations, assignmentNanos, reductionNanos, taskNanos, Double.NaN,
+                                shift, -1, emptyClusters));
             }
-            //Collect results and calculate new centroids
-            for (int i = 0; i < k; i++) {
-                double[][] sumAndCount = results.get(i).get();
-                if (sumAndCount[1][0] > 0) { // Avoid division by zero
-                    for (int j = 0; j < data[0].length; j++) {
-                        newCentroids[i][j] = sumAndCount[0][j] / sumAndCount[1][0];
-                    }
-                } else {
-                    newCentroids[i] = centroids[i]; // If no points are assigned, retain old centroid
+        }
+    }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    //The centroids of the last fit with the engine's metric, to save or to warm-start a later fit
+    public KMeansModel getModel() {
+        if (centroids == null) {
+            throw new IllegalStateException("There is no model before the first fit.");
+        }
+        return new KMeansModel(centroids, metric);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    //False when the last fit stopped because it reached maxIterations
+    public boolean hasConverged() {
+        return converged;
+    }
+    //One task per cluster, every task assigns every point: O(n*k^2*d) per iteration
+    private double[][] perClusterIteration(KMeansData data) throws Exception {
+        double[][] newCentroids = new double[k][data.dims()];
+        List<Future<double[][]>> results = new ArrayList<>();
+        long[] times = new long[k];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < k; i++) {
+            final int clusterIndex = i;
+            //Submits task to assign data points to nearest centroid and calculate sum
+            //Parallelizes the assignment step by assigning one thread per cluster
+            Callable<double[][]> task = () -> {
+                long taskStart = System.nanoTime();
+                double[][] result = assignAndSum(data, clusterIndex);
+                times[clusterIndex] = System.nanoTime() - taskStart;
+                return result;
+            };
+            results.add(pool.submit(task));
+        }
+        for (Future<double[][]> future : results) {
+            future.get();
+        }
+        long assigned = System.nanoTime();
+        //Collect results and calculate new centroids
+        emptyClusters = 0;
+        for (int i = 0; i < k; i++) {
+            double[][] sumAndCount = results.get(i).get();
+            if (sumAndCount[1][0] == 0) {
+                emptyClusters++;
+            }
+            if (sumAndCount[1][0] > 0) { // Avoid division by zero
+                for (int j = 0; j < data.dims(); j++) {
+                    newCentroids[i][j] = sumAndCount[0][j] / sumAndCount[1][0];
                 }
+            } else {
+                newCentroids[i] = centroids[i]; // If no points are assigned, retain old centroid
             }
-
-            convergence = checkConvergence(newCentroids);
-            centroids = newCentroids;
-            iteration++;
         }
+        metric.normalize(newCentroids);
+        recordTimes(times, start, assigned);
+        return newCentroids;
     }
-    //Randomly select k data points as initial centroids
-    private double[][] initializeCentroids(double[][] data) {
-        Random random = new Random();
-        double[][] initialCentroids = new double[k][data[0].length];
+    //One task per contiguous block of points, every point is assigned once: O(n*k*d) per iteration
+    //Each task fills its own accumulator with partial sums and counts for all k clusters, which are merged here
+    private double[][] fusedIteration(KMeansData data, int[] bounds) throws Exception {
+        List<Future<ClusterAccumulator>> results = new ArrayList<>();
+        long[] times = new long[partials.length];
+        long start = System.nanoTime();
+        for (int t = 0; t < partials.length; t++) {
+            final int task = t;
+            final int first = bounds[t];
+            final int end = bounds[t + 1];
+            final ClusterAccumulator partial = partials[t];
+            results.add(pool.submit(() -> {
+                long taskStart = System.nanoTime();
+                assignAndSumRange(data, first, end, partial);
+                times[task] = System.nanoTime() - taskStart;
+                return partial;
+            }));
+        }
+        for (Future<ClusterAccumulator> future : results) {
+            future.get();
+        }
+        long assigned = System.nanoTime();
+
+        total.reset();
+        for (Future<ClusterAccumulator> future : results) {
+            total.merge(future.get());
+        }
+
+        double[][] newCentroids = new double[k][data.dims()];
         for (int i = 0; i < k; i++) {
-            initialCentroids[i] = data[random.nextInt(data.length)];
+            if (!total.mean(i, newCentroids[i])) {
+                newCentroids[i] = centroids[i]; // If no points are assigned, retain old centroid
+            }
         }
-        return initialCentroids;
+        metric.normalize(newCentroids);
+        recordTimes(times, start, assigned);
+        return newCentroids;
+    }
+    //Keeps the phase and task times of the current iteration for the listener
+    private void recordTimes(long[] times, long start, long assigned) {
+        taskNanos = times;
+        assignmentNanos = assigned - start;
+        reductionNanos = System.nanoTime() - assigned;
+    }
+    //Seeded Random when setSeed was called, otherwise a fresh unseeded one
+    private Random newRandom() {
+        return seeded ? new Random(seed) : new Random();
     }
     //Assigns data points to centroid and calculates sum
-    private double[][] assignAndSum(double[][] data, int clusterIndex) {
-        double[] sum = new double[data[0].length];
+    private double[][] assignAndSum(KMeansData data, int clusterIndex) {
+        double[] sum = new double[data.dims()];
         double count = 0;
-        for (double[] point : data) {
-            if (getNearestCentroid(point) == clusterIndex) {
-                for (int j = 0; j < point.length; j++) {
-                    sum[j] += point[j];
-                }
+        for (int p = 0; p < data.rows(); p++) {
+            if (getNearestCentroid(data, p) == clusterIndex) {
+                data.addRowTo(p, sum, 0);
                 count++;
             }
         }
         return new double[][]{sum, new double[]{count}};
     }
-    //Returns index of nearest centroid
-    private int getNearestCentroid(double[] point) {
-        int nearest = -1;
-        double minDistance = Double.MAX_VALUE;
-        for (int i = 0; i < k; i++) {
-            double dist = euclideanDistance(point, centroids[i]);
-            if (dist < minDistance) {
-                nearest = i;
-                minDistance = dist;
+    //Assigns every point in [start, end) to its nearest centroid and accumulates sums and counts for all clusters
+    private ClusterAccumulator assignAndSumRange(KMeansData data, int start, int end, ClusterAccumulator partial) {
+        partial.reset();
+        for (int p = start; p < end; p++) {
+            int nearest = getNearestCentroid(data, p);
+            partial.add(data, p, nearest);
+            if (labels != null) {
+                partial.record(metric.distance(data, p, flatCentroids, nearest), labels[p] != nearest);
+                labels[p] = nearest;
             }
         }
-        return nearest;
+        return partial;
     }
-    //Calculates Euclidean distance between two points
-    private double euclideanDistance(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.pow(a[i] - b[i], 2);
-        }
-        return Math.sqrt(sum);
+    //Returns index of nearest centroid
+    private int getNearestCentroid(KMeansData data, int row) {
+        return metric.nearest(data, row, flatCentroids, k);
     }
-    //Checks if centroids have moved less than tolerance
-    private boolean checkConvergence(double[][] newCentroids) {
+    //Largest distance any centroid moved, converged once it is within tolerance
+    private double largestShift(double[][] newCentroids) {
+        double largest = 0;
         for (int i = 0; i < k; i++) {
-            if (euclideanDistance(centroids[i], newCentroids[i]) > tolerance) {
-                return false;
-            }
+            largest = Math.max(largest, kernel.squaredDistance(centroids[i], newCentroids[i]));
         }
-        return true;
+        return Math.sqrt(largest);
+    }
+    //Labels before the first assignment, so every point counts as reassigned in the first iteration
+    private static int[] newLabels(int rows) {
+        int[] labels = new int[rows];
+        Arrays.fill(labels, -1);
+        return labels;
     }
 
+    //Shuts down the pool if this instance created it
     public void shutdown() {
-        executor.shutdown();
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
     }
     //Time Complexity: Sequentially O(n*k*d) where n is the number of data points, k is the number of clusters, and d is the number of dimensions per data point
     //In parallel, the time complexity would be O(n*k*d/p) where p is the number of threads
     //If n = p, the time complexity would be O(k*d)
+    //The per-cluster strategy (fused = false) repeats the assignment once per cluster, O(n*k^2*d/p)
     public static void main(String[] args) throws Exception {
         double[][] data = {{1, 2}, {1, 5}, {5, 8}, {8, 8}, {1, 0}, {9, 11}, {8, 2}, {10, 2}, {9, 3}};
         ParallelKMeans_Cluster kMeans = new ParallelKMeans_Cluster(3, 1000, 0.01, 4);
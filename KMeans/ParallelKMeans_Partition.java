@@ -2,144 +2,540 @@ package KMeans;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 import java.util.Random;
 import java.util.Arrays;
+import Compute.ComputePool;
+
+public class ParallelKMeans_Partition implements AutoCloseable {
+    // BRUTE_FORCE computes all k distances for every point in every iteration
+    // HAMERLY keeps per-point distance bounds and skips points whose nearest centroid provably cannot have changed
+    public enum Strategy { BRUTE_FORCE, HAMERLY }
+
+    // Rows read from a mapped file per block, and rows sampled from it for seeding
+    private static final int MAPPED_BLOCK_ROWS = 1024;
+    private static final int MAPPED_SEED_SAMPLE = 100000;
+
+    // The in-memory fit splits the rows into about CHUNKS_PER_THREAD fork-join chunks per worker, so a worker that
+    // finishes early steals chunks from a slow one instead of waiting for it
+    // The chunks depend only on the data shape and the parallelism, never on which worker ran what
+    private static final int CHUNKS_PER_THREAD = 16;
+    private static final int MIN_CHUNK_ROWS = 256;
+    // Every chunk keeps its own k x d sums, so with large k * d fewer chunks are used, but never fewer than one per worker
+    private static final int MAX_CHUNK_SUMS = 1 << 24;
+
+    // Sums added per merge task at least, so a merge of little data stays on one thread
+    private static final int MERGE_GRAIN = 1 << 14;
+
+    // Relative slack on the bound test so floating point rounding in the bounds never skips a real reassignment
+    private static final double BOUND_SLACK = 1e-12;
+
+    // Between full updates the cluster sums only change by the points that moved,
+    // and every FULL_UPDATE_INTERVAL iterations they are rebuilt from all points so rounding cannot build up
+    private static final int FULL_UPDATE_INTERVAL = 16;
 
-public class ParallelKMeans_Partition {
     private int k; // Number of clusters
     private int maxIterations; // Maximum number of iterations
     private double tolerance; // Convergence criterion
-    private ExecutorService executor;
+    private ComputePool pool; // Workers, reused by every fit until shutdown
+    private boolean ownsPool; // Whether this instance created the pool, and so shuts it down
     private double[][] centroids; // To store the centroids
     private int numThreads;  // To store the number of threads
+    private Strategy strategy = Strategy.BRUTE_FORCE;
+    private double[] flatCentroids; // Centroids in the flat layout read by the distance kernel
+    private DistanceKernel kernel = DistanceKernel.get(); // Measures how far centroids moved
+    private DistanceMetric metric = DistanceMetric.euclidean();
+    private Seeding seeding = Seeding.kMeansPlusPlus();
+    private long seed;
+    private boolean seeded; //Whether setSeed was called
+    private KMeansListener listener = KMeansListener.NONE;
+    private boolean instrumented; // Whether the current fit records inertia and reassignments for the listener
+    private double minChangeFraction = 0; // Converged once fewer than this fraction of the points change cluster
+    private boolean fullUpdate; // Whether the current iteration rebuilds the sums rather than moving the changed points
+    private int iterations; // Iterations run by the last fit
+    private boolean converged; // Whether the last fit stopped on the tolerance rather than on maxIterations
+
+    // Hamerly state, one entry per data point
+    // Partition p only reads and writes the slice [bounds[p], bounds[p + 1]), so the tasks stay independent
+    private int[] labels; // Index of the assigned centroid, -1 before the first assignment
+    private double[] upper; // Upper bound on the distance to the assigned centroid
+    private double[] lower; // Lower bound on the distance to every other centroid
+    // Hamerly state, one entry per centroid, written by the calling thread between iterations
+    private double[] halfGaps; // Half the distance from each centroid to its nearest other centroid
+    private double[] shifts; // Distance each centroid moved in the previous iteration, null before the first update
+    private int largestShiftIndex; // Centroid that moved the furthest
+    private double largestShift;
+    private double secondLargestShift;
 
     public ParallelKMeans_Partition(int k, int maxIterations, double tolerance, int numThreads) {
+        this(k, maxIterations, tolerance, new ComputePool(numThreads));
+        this.ownsPool = true;
+    }
+
+    // Runs on an existing pool, which shutdown() leaves running
+    public ParallelKMeans_Partition(int k, int maxIterations, double tolerance, ComputePool pool) {
         this.k = k;
         this.maxIterations = maxIterations;
         this.tolerance = tolerance;
-        this.executor = Executors.newFixedThreadPool(numThreads);
-        this.numThreads = numThreads;  // Initialize numThreads
+        this.pool = pool;
+        this.numThreads = pool.parallelism();  // One partition per worker
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    //Strategy used to choose the initial centroids, k-means++ by default
+    public void setSeeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+
+    //How a point's distance to a centroid is measured, squared Euclidean by default
+    //Seeding still weighs points by squared Euclidean distance, which for L2-normalized points is 2 * (1 - cosine)
+    //HAMERLY needs the triangle inequality, so with a metric that is not one (cosine) every point is scanned in full
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    //Also stops the in-memory fit once fewer than this fraction of the points changed cluster in an iteration
+    //0, the default, stops only when no point changed, at which point the centroids cannot move any more
+    public void setMinChangeFraction(double minChangeFraction) {
+        this.minChangeFraction = minChangeFraction;
+    }
+
+    //Called after every iteration, KMeansListener.NONE to stop reporting
+    //With HAMERLY the inertia costs one distance per point, even for the points whose bounds skip the scan
+    public void setListener(KMeansListener listener) {
+        this.listener = listener;
+    }
+
+    //Makes the seeding reproducible, every later fit starts from the same random sequence
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
     }
 
     public void fit(double[][] data) throws Exception {
-        List<List<double[]>> partitions = partitionData(data, numThreads);
-        // Partitions the data into numThreads partitions
-        centroids = initializeCentroids(data);
+        fit(KMeansData.of(data));
+    }
+
+    //Warm start: the fit begins from the model's centroids instead of seeding, which on data close to what the
+    //model was fitted on converges in a few iterations. The model must have k centroids of the data's dimensions
+    //and the engine's distance metric, otherwise IllegalArgumentException is thrown before anything runs
+    public void fit(double[][] data, KMeansModel start) throws Exception {
+        fit(KMeansData.of(data), start);
+    }
+
+    public void fit(KMeansData data, KMeansModel start) throws Exception {
+        fit(data, start.warmStart(k, data.dims(), metric));
+    }
 
-        boolean convergence = false;
-        int iteration = 0;
+    //The assignment runs as fork-join chunks of contiguous rows, stolen by whichever worker is idle
+    //Every chunk sums into its own accumulator, and the merge adds the chunks in chunk order for every cluster,
+    //so a seeded fit gives the same centroids on every run however the chunks were scheduled
+    public void fit(KMeansData data) throws Exception {
+        fit(data, seeding);
+    }
+
+    private void fit(KMeansData data, Seeding initial) throws Exception {
+        centroids = initial.seed(data, k, newRandom(), pool.executor(), numThreads);
+        metric.normalize(centroids);
+        boolean bounded = strategy == Strategy.HAMERLY && metric.isMetric();
+        instrumented = listener != KMeansListener.NONE;
+        labels = newLabels(data.rows());
+        if (bounded) {
+            upper = new double[data.rows()];
+            lower = new double[data.rows()];
+            shifts = null;
+        }
+
+        // One accumulator per chunk, reset by its chunk at the start of every iteration
+        // Outside full updates they hold only the changes made by the moved points
+        int chunks = Math.min(numThreads * CHUNKS_PER_THREAD, Math.max(numThreads, MAX_CHUNK_SUMS / (k * data.dims())));
+        chunks = Math.max(1, Math.min(chunks, data.rows() / MIN_CHUNK_ROWS));
+        ClusterAccumulator[] parts = new ClusterAccumulator[chunks];
+        for (int c = 0; c < chunks; c++) {
+            parts[c] = new ClusterAccumulator(k, data.dims());
+        }
+        // Sums and counts of every cluster, carried from one iteration to the next
+        ClusterAccumulator total = new ClusterAccumulator(k, data.dims());
+
+        converged = false;
+        iterations = 0;
         // Clustering loop until convergence or maximum iterations
-        while (!convergence && iteration < maxIterations) {
-            List<Future<double[][][]>> results = new ArrayList<>();
-            double[][] newCentroids = new double[k][data[0].length];
-
-            for (List<double[]> partition : partitions) {
-                final List<double[]> finalPartition = partition;
-                // Submits task to assign data points to nearest centroid and calculate sum
-                // Parallelizes the assignment step by assigning one thread per partition
-                Callable<double[][][]> task = () -> assignAndSum(finalPartition);
-                results.add(executor.submit(task));
+        while (!converged && iterations < maxIterations) {
+            double[][] newCentroids = new double[k][data.dims()];
+            flatCentroids = DistanceKernel.flatten(centroids, flatCentroids);
+            if (bounded) {
+                halfGaps = computeHalfGaps();
             }
-            
-            double[][] globalSums = new double[k][data[0].length];
-            double[] globalCounts = new double[k];
-            // Retrieve results of partitions
-            for (Future<double[][][]> future : results) {
-                double[][][] localResults = future.get();
-                for (int i = 0; i < k; i++) {
-                    globalCounts[i] += localResults[1][0][i];
-                    for (int j = 0; j < data[0].length; j++) {
-                        globalSums[i][j] += localResults[0][i][j];
-                    }
-                }
+            fullUpdate = iterations % FULL_UPDATE_INTERVAL == 0;
+
+            long[] times = new long[chunks];
+            long started = System.nanoTime();
+            // Assigns every chunk of rows to its nearest centroids and sums it into the chunk's accumulator
+            pool.invoke(new AssignTask(data, 0, chunks, bounded, parts, times));
+            long assigned = System.nanoTime();
+
+            if (fullUpdate) {
+                total.reset();
+            } else {
+                total.resetTallies();
             }
+            // Adds every chunk's sums into the totals, every task owning a range of clusters
+            mergeInto(total, parts, data.dims());
             // Calculate new centroids
-            for (int i = 0; i < k; i++) {
-                if (globalCounts[i] > 0) {
-                    for (int j = 0; j < data[0].length; j++) {
-                        newCentroids[i][j] = globalSums[i][j] / globalCounts[i];
+            computeCentroids(total, newCentroids);
+            long reduced = System.nanoTime();
+            if (bounded) {
+                computeShifts(newCentroids);
+            }
+            // Check convergence, by the centroid shift or by how few points changed cluster
+            long changed = total.reassigned();
+            boolean settled = changed == 0 || changed < minChangeFraction * data.rows();
+            finishIteration(newCentroids, total, times, assigned - started, reduced - assigned, settled);
+        }
+    }
+
+    //Out-of-core fit over a memory-mapped file, always using the brute force strategy
+    //Each partition is one contiguous byte range of the file, scanned sequentially every iteration in blocks of rows
+    //Seeding runs on an in-heap random sample of at most MAPPED_SEED_SAMPLE rows
+    public void fit(MappedKMeansData data) throws Exception {
+        fit(data, seeding);
+    }
+
+    //Warm start of the out-of-core fit from a model's centroids, see fit(KMeansData, KMeansModel)
+    public void fit(MappedKMeansData data, KMeansModel start) throws Exception {
+        fit(data, start.warmStart(k, data.dims(), metric));
+    }
+
+    private void fit(MappedKMeansData data, Seeding initial) throws Exception {
+        int[] bounds = data.partitionBounds(numThreads);
+        Random random = newRandom();
+        centroids = initial.seed(data.sample(MAPPED_SEED_SAMPLE, random), k, random, pool.executor(), numThreads);
+        metric.normalize(centroids);
+        instrumented = listener != KMeansListener.NONE;
+        labels = instrumented ? newLabels(data.rows()) : null;
+
+        ClusterAccumulator[] partials = new ClusterAccumulator[bounds.length - 1];
+        for (int p = 0; p < partials.length; p++) {
+            partials[p] = new ClusterAccumulator(k, data.dims());
+        }
+        ClusterAccumulator total = new ClusterAccumulator(k, data.dims());
+
+        converged = false;
+        iterations = 0;
+        while (!converged && iterations < maxIterations) {
+            List<Future<ClusterAccumulator>> results = new ArrayList<>();
+            double[][] newCentroids = new double[k][data.dims()];
+            flatCentroids = DistanceKernel.flatten(centroids, flatCentroids);
+            long[] times = new long[partials.length];
+            long started = System.nanoTime();
+            for (int p = 0; p < bounds.length - 1; p++) {
+                final int start = bounds[p];
+                final int end = bounds[p + 1];
+                final ClusterAccumulator partial = partials[p];
+                Callable<ClusterAccumulator> task = () -> assignAndSumMapped(data, start, end, partial);
+                results.add(pool.submit(timed(task, times, p)));
+            }
+            for (Future<ClusterAccumulator> future : results) {
+                future.get();
+            }
+            long assigned = System.nanoTime();
+
+            total.reset();
+            mergeInto(total, partials, data.dims());
+            computeCentroids(total, newCentroids);
+            long reduced = System.nanoTime();
+            finishIteration(newCentroids, total, times, assigned - started, reduced - assigned, false);
+        }
+    }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    //The centroids of the last fit with the engine's metric, to save or to warm-start a later fit
+    public KMeansModel getModel() {
+        if (centroids == null) {
+            throw new IllegalStateException("There is no model before the first fit.");
+        }
+        return new KMeansModel(centroids, metric);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    //False when the last fit stopped because it reached maxIterations
+    public boolean hasConverged() {
+        return converged;
+    }
+    //Checks convergence, installs the new centroids and reports the iteration to the listener
+    //settled is true when the label counts already show convergence
+    private void finishIteration(double[][] newCentroids, ClusterAccumulator total, long[] times,
+                                 long assignmentNanos, long reductionNanos, boolean settled) {
+        double shift = largestShift(newCentroids);
+        converged = settled || shift <= tolerance;
+        centroids = newCentroids;
+        iterations++;
+        if (instrumented) {
+            listener.onIteration(new IterationStats(iterations, assignmentNanos, reductionNanos, times,
+                    total.inertia(), shift, total.reassigned(), total.emptyClusters()));
+        }
+    }
+    //Wraps a partition's task so its run time lands in times[index]
+    private static Callable<ClusterAccumulator> timed(Callable<ClusterAccumulator> task, long[] times, int index) {
+        return () -> {
+            long start = System.nanoTime();
+            ClusterAccumulator result = task.call();
+            times[index] = System.nanoTime() - start;
+            return result;
+        };
+    }
+    //Mean of every cluster, an empty cluster keeps its old centroid
+    private void computeCentroids(ClusterAccumulator total, double[][] newCentroids) {
+        for (int i = 0; i < k; i++) {
+            if (!total.mean(i, newCentroids[i])) {
+                newCentroids[i] = centroids[i]; // Retain old centroid if no points assigned
+            }
+        }
+        metric.normalize(newCentroids);
+    }
+    //For each chunk, assigns data points to nearest centroid and adds them to the chunk's accumulator
+    //A chunk is the contiguous row range [start, end), so the scan reads memory sequentially
+    private void assignAndSum(KMeansData data, int start, int end, ClusterAccumulator partial) {
+        for (int p = start; p < end; p++) {
+            accumulate(data, p, getNearestCentroid(data, p), partial);
+        }
+    }
+    //Adds a point to its cluster on a full update, otherwise only moves it if its cluster changed, and counts the change
+    private void accumulate(KMeansData data, int row, int nearest, ClusterAccumulator partial) {
+        int previous = labels[row];
+        if (fullUpdate) {
+            partial.add(data, row, nearest);
+        } else if (nearest != previous) {
+            partial.move(data, row, previous, nearest);
+        }
+        partial.record(instrumented ? metric.distance(data, row, flatCentroids, nearest) : 0, nearest != previous);
+        labels[row] = nearest;
+    }
+    //Mapped variant of assignAndSum, reading the partition's rows from the file one block at a time
+    private ClusterAccumulator assignAndSumMapped(MappedKMeansData data, int start, int end, ClusterAccumulator partial) {
+        partial.reset();
+        int dims = data.dims();
+        double[] block = new double[MAPPED_BLOCK_ROWS * dims];
+        for (int first = start; first < end; first += MAPPED_BLOCK_ROWS) {
+            int count = Math.min(MAPPED_BLOCK_ROWS, end - first);
+            data.readRows(first, count, block);
+            for (int r = 0; r < count; r++) {
+                int nearest = metric.nearest(block, r * dims, flatCentroids, k, dims);
+                partial.add(block, r * dims, nearest);
+                if (instrumented) {
+                    int row = first + r;
+                    partial.record(metric.distance(block, r * dims, flatCentroids, nearest, dims), labels[row] != nearest);
+                    labels[row] = nearest;
+                }
+            }
+        }
+        return partial;
+    }
+    //Hamerly variant of assignAndSum, producing the same assignments as the brute force scan
+    //A point keeps its centroid without computing any distance when its upper bound is below both
+    //the lower bound to every other centroid and half the gap from its centroid to the nearest other centroid
+    private void assignAndSumBounded(KMeansData data, int start, int end, ClusterAccumulator partial) {
+        for (int p = start; p < end; p++) {
+            int previous = labels[p];
+            if (shifts == null) {
+                assignWithBounds(data, p); // First iteration, no bounds yet
+            } else {
+                int assigned = labels[p];
+                // Centroids moved since the bounds were computed, so loosen them by the distance moved
+                upper[p] += shifts[assigned];
+                lower[p] -= assigned == largestShiftIndex ? secondLargestShift : largestShift;
+                double bound = Math.max(halfGaps[assigned], lower[p]);
+                if (!(upper[p] * (1 + BOUND_SLACK) < bound)) {
+                    // Tighten the upper bound and test again before falling back to a full scan
+                    upper[p] = metric.toMetric(metric.distance(data, p, flatCentroids, assigned));
+                    if (!(upper[p] * (1 + BOUND_SLACK) < bound)) {
+                        assignWithBounds(data, p);
                     }
+                }
+            }
+            // The bounds wrote the new label, accumulate compares it with the previous one
+            int nearest = labels[p];
+            labels[p] = previous;
+            accumulate(data, p, nearest, partial);
+        }
+    }
+    //Halves the chunk range [from, to) down to single chunks, chunk c being rows [c * rows / n, (c + 1) * rows / n)
+    //for n chunks, and assigns each chunk into its own accumulator parts[c]
+    private class AssignTask extends RecursiveAction {
+        private final KMeansData data;
+        private final int from, to;
+        private final boolean bounded;
+        private final ClusterAccumulator[] parts;
+        private final long[] times; // Run time of every chunk
+
+        AssignTask(KMeansData data, int from, int to, boolean bounded, ClusterAccumulator[] parts, long[] times) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+            this.bounded = bounded;
+            this.parts = parts;
+            this.times = times;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int start = (int) ((long) from * data.rows() / parts.length);
+                int end = (int) ((long) to * data.rows() / parts.length);
+                ClusterAccumulator partial = parts[from];
+                long begin = System.nanoTime();
+                partial.reset();
+                if (bounded) {
+                    assignAndSumBounded(data, start, end, partial);
                 } else {
-                    newCentroids[i] = centroids[i]; // Retain old centroid if no points assigned
+                    assignAndSum(data, start, end, partial);
                 }
+                times[from] = System.nanoTime() - begin;
+                return;
             }
-            // Check convergence
-            convergence = checkConvergence(newCentroids);
-            centroids = newCentroids;
-            iteration++;
-        }
-        executor.shutdown();
-    }
-    //Partitions the data into numPartitions partitions
-    private List<List<double[]>> partitionData(double[][] data, int numPartitions) { 
-        List<List<double[]>> partitions = new ArrayList<>();
-        for (int i = 0; i < numPartitions; i++) {
-            partitions.add(new ArrayList<>());
-        }
-        for (int i = 0; i < data.length; i++) {
-            partitions.get(i % numPartitions).add(data[i]);
-        }
-        return partitions;
-    }
-    //For each partition, assigns data points to nearest centroid and calculates sum
-    private double[][][] assignAndSum(List<double[]> partition) {
-        double[][] sum = new double[k][partition.get(0).length];
-        double[] count = new double[k];
-        for (double[] point : partition) {
-            int nearest = getNearestCentroid(point);
-            count[nearest]++;
-            for (int j = 0; j < point.length; j++) {
-                sum[nearest][j] += point[j];
+            int mid = (from + to) >>> 1;
+            invokeAll(new AssignTask(data, from, mid, bounded, parts, times),
+                      new AssignTask(data, mid, to, bounded, parts, times));
+        }
+    }
+    //Adds every part into total on the pool, sharded by centroid: each task owns a range of clusters
+    //and adds that slice of every part, so tasks never write the same sums and no merge is left to one thread
+    //Each cluster adds the parts in array order, so the totals never depend on how the merge was scheduled
+    //With k = 1000, d = 512 and the 32 chunks MAX_CHUNK_SUMS allows, that is 16M additions spread over all workers
+    private void mergeInto(ClusterAccumulator total, ClusterAccumulator[] parts, int dims) {
+        for (ClusterAccumulator part : parts) {
+            total.mergeTallies(part);
+        }
+        int grain = Math.max(1, MERGE_GRAIN / (dims * parts.length));
+        pool.invoke(new MergeTask(total, parts, 0, k, grain));
+    }
+    //Halves the cluster range until at most grain clusters, then adds them from every part
+    private static class MergeTask extends RecursiveAction {
+        private final ClusterAccumulator total;
+        private final ClusterAccumulator[] parts;
+        private final int from, to, grain;
+
+        MergeTask(ClusterAccumulator total, ClusterAccumulator[] parts, int from, int to, int grain) {
+            this.total = total;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (ClusterAccumulator part : parts) {
+                    total.mergeClusters(part, from, to);
+                }
+                return;
             }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MergeTask(total, parts, from, mid, grain),
+                      new MergeTask(total, parts, mid, to, grain));
         }
-        return new double[][][]{sum, new double[][]{count}};
     }
-    //Returns index of nearest centroid
-    private int getNearestCentroid(double[] point) {
+    //Scans all centroids for a point and resets its label and both bounds
+    //Compares costs exactly like getNearestCentroid and converts to metric distances (square roots for Euclidean) only for the bounds
+    private void assignWithBounds(KMeansData data, int row) {
         int nearest = -1;
         double minDistance = Double.MAX_VALUE;
+        double secondDistance = Double.MAX_VALUE;
         for (int i = 0; i < k; i++) {
-            double dist = euclideanDistance(point, centroids[i]);
+            double dist = metric.distance(data, row, flatCentroids, i);
             if (dist < minDistance) {
+                secondDistance = minDistance;
                 nearest = i;
                 minDistance = dist;
+            } else if (dist < secondDistance) {
+                secondDistance = dist;
             }
         }
-        return nearest;
+        labels[row] = nearest;
+        upper[row] = metric.toMetric(minDistance);
+        lower[row] = metric.toMetric(secondDistance);
     }
-    //Calculates Euclidean distance between two points
-    private double euclideanDistance(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.pow(a[i] - b[i], 2);
+    //For each centroid, half the distance to its nearest other centroid
+    private double[] computeHalfGaps() {
+        double[] gaps = new double[k];
+        Arrays.fill(gaps, Double.MAX_VALUE);
+        for (int i = 0; i < k; i++) {
+            for (int j = i + 1; j < k; j++) {
+                double half = metric.toMetric(metric.distance(centroids[i], centroids[j])) / 2;
+                gaps[i] = Math.min(gaps[i], half);
+                gaps[j] = Math.min(gaps[j], half);
+            }
         }
-        return Math.sqrt(sum);
+        return gaps;
     }
-    //Checks if the algorithm has converged
-    private boolean checkConvergence(double[][] newCentroids) {
+    //Records how far every centroid moved, used to loosen the bounds in the next iteration
+    private void computeShifts(double[][] newCentroids) {
+        shifts = new double[k];
+        largestShiftIndex = -1;
+        largestShift = 0;
+        secondLargestShift = 0;
         for (int i = 0; i < k; i++) {
-            if (euclideanDistance(centroids[i], newCentroids[i]) > tolerance) {
-                return false;
+            shifts[i] = metric.toMetric(metric.distance(centroids[i], newCentroids[i]));
+            if (shifts[i] > largestShift) {
+                secondLargestShift = largestShift;
+                largestShift = shifts[i];
+                largestShiftIndex = i;
+            } else if (shifts[i] > secondLargestShift) {
+                secondLargestShift = shifts[i];
             }
         }
-        return true;
     }
-    //Randomly select k data points as initial centroids
-    private double[][] initializeCentroids(double[][] data) {
-        Random random = new Random();
-        double[][] initialCentroids = new double[k][data[0].length];
+    //Returns index of nearest centroid
+    private int getNearestCentroid(KMeansData data, int row) {
+        return metric.nearest(data, row, flatCentroids, k);
+    }
+    //Largest distance any centroid moved, converged once it is within tolerance
+    private double largestShift(double[][] newCentroids) {
+        double largest = 0;
         for (int i = 0; i < k; i++) {
-            initialCentroids[i] = data[random.nextInt(data.length)];
+            largest = Math.max(largest, kernel.squaredDistance(centroids[i], newCentroids[i]));
         }
-        return initialCentroids;
+        return Math.sqrt(largest);
+    }
+    //Labels before the first assignment, so every point counts as reassigned in the first iteration
+    private static int[] newLabels(int rows) {
+        int[] labels = new int[rows];
+        Arrays.fill(labels, -1);
+        return labels;
+    }
+    //Seeded Random when setSeed was called, otherwise a fresh unseeded one
+    private Random newRandom() {
+        return seeded ? new Random(seed) : new Random();
+    }
+    // Shuts down the pool if this instance created it
+    public void shutdown() {
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
     }
     //Time Complexity: Sequentially O(n*k*d) where n is the number of data points, k is the number of clusters, and d is the number of dimensions per data point
     //Parallely O(n*k*d/p) where p is the number of partitions
     //If p is tailored to handle the number of centroids, effectively matching how many data points each thread will handle,
     //the time complexity will be O(k*d)
+    //With the HAMERLY strategy each iteration adds O(k^2*d) for the centroid gaps, but once few points change cluster
+    //most points cost O(1) or O(d) instead of O(k*d)
+    //Between full updates the new sums cost O(m*d) for the m points that changed cluster instead of O(n*d)
     public static void main(String[] args) throws Exception {
         double[][] data = {{1, 2}, {1, 5}, {5, 8}, {8, 8}, {1, 0}, {9, 11}, {8, 2}, {10, 2}, {9, 3}};
         ParallelKMeans_Partition kMeans = new ParallelKMeans_Partition(3, 1000, 0.01, 4);
@@ -148,5 +544,6 @@ public class ParallelKMeans_Partition {
         for (double[] centroid : kMeans.centroids) {
             System.out.println(Arrays.toString(centroid));
         }
+        kMeans.shutdown();
     }
 }
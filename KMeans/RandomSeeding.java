@@ -0,0 +1,37 @@
+package KMeans;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+//Picks k distinct rows uniformly at random
+class RandomSeeding implements Seeding {
+    @Override
+    public double[][] seed(KMeansData data, int k, Random random, ExecutorService executor, int numPartitions) {
+        int[] rows = distinctRows(data.rows(), k, random);
+        double[][] centroids = new double[k][];
+        for (int i = 0; i < k; i++) {
+            centroids[i] = data.row(rows[i]);
+        }
+        return centroids;
+    }
+
+    //Floyd's algorithm, k distinct indices in [0, n) in O(k) draws
+    static int[] distinctRows(int n, int k, Random random) {
+        if (k > n) {
+            throw new IllegalArgumentException("Cannot choose " + k + " centroids from " + n + " data points.");
+        }
+        Set<Integer> chosen = new HashSet<>();
+        int[] rows = new int[k];
+        int next = 0;
+        for (int j = n - k; j < n; j++) {
+            int candidate = random.nextInt(j + 1);
+            if (!chosen.add(candidate)) {
+                candidate = j;
+                chosen.add(candidate);
+            }
+            rows[next++] = candidate;
+        }
+        return rows;
+    }
+}
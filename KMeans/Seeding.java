@@ -0,0 +1,35 @@
+package KMeans;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+//Strategy for choosing the k initial centroids
+//Every random choice is drawn from the supplied Random, so a seeded Random reproduces the same centroids
+//When an executor is given the distance passes are split over numPartitions contiguous row ranges
+public interface Seeding {
+    double[][] seed(KMeansData data, int k, Random random, ExecutorService executor, int numPartitions) throws Exception;
+
+    //k distinct data points chosen uniformly at random
+    static Seeding random() {
+        return new RandomSeeding();
+    }
+
+    //k-means++: each new centroid is a data point chosen with probability proportional to its squared distance to the nearest chosen one
+    static Seeding kMeansPlusPlus() {
+        return new KMeansPlusPlusSeeding();
+    }
+
+    //The given centroids, copied, for a warm start from an earlier fit; fails if k or the dimensions differ
+    static Seeding fixed(double[][] centroids) {
+        return new FixedSeeding(centroids);
+    }
+
+    //Scalable k-means|| with 5 rounds sampling about 2k candidates each
+    static Seeding kMeansParallel() {
+        return new KMeansParallelSeeding(5, 2.0);
+    }
+
+    //k-means|| sampling about oversampling * k candidates in each of the given rounds
+    static Seeding kMeansParallel(int rounds, double oversampling) {
+        return new KMeansParallelSeeding(rounds, oversampling);
+    }
+}
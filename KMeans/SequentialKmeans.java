@@ -1,6 +1,4 @@
 package KMeans;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 import java.util.Arrays;
 
@@ -9,6 +7,16 @@ public class SequentialKmeans {
     private int maxIterations; //Maximum number of iterations
     private double tolerance; //Convergence criterion
     private double[][] centroids;
+    private double[] flatCentroids; //Centroids in the flat layout read by the distance kernel
+    private DistanceKernel kernel = DistanceKernel.get(); //Measures how far centroids moved
+    private DistanceMetric metric = DistanceMetric.euclidean();
+    private Seeding seeding = Seeding.kMeansPlusPlus();
+    private long seed;
+    private boolean seeded; //Whether setSeed was called
+    private KMeansListener listener = KMeansListener.NONE;
+    private int[] labels; //Cluster of every point, only kept for a listener
+    private int iterations; //Iterations run by the last fit
+    private boolean converged; //Whether the last fit stopped on the tolerance rather than on maxIterations
 
     public SequentialKmeans(int k, int maxIterations, double tolerance) {
         this.k = k;
@@ -16,94 +24,134 @@ public class SequentialKmeans {
         this.tolerance = tolerance;
     }
 
+    //Strategy used to choose the initial centroids, k-means++ by default
+    public void setSeeding(Seeding seeding) {
+        this.seeding = seeding;
+    }
+
+    //How a point's distance to a centroid is measured, squared Euclidean by default
+    //Seeding still weighs points by squared Euclidean distance, which for L2-normalized points is 2 * (1 - cosine)
+    public void setDistanceMetric(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    //Called after every iteration, KMeansListener.NONE to stop reporting
+    public void setListener(KMeansListener listener) {
+        this.listener = listener;
+    }
+
+    //Makes the seeding reproducible, every later fit starts from the same random sequence
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
     public void fit(double[][] data) throws Exception {
-        centroids = initializeCentroids(data); // Randomly initialize centroids
-        boolean convergence = false;
-        int iteration = 0;
+        fit(KMeansData.of(data));
+    }
 
-        //Clustering loop until convergence or maximum iterations
-        while (!convergence && iteration < maxIterations) {
-            double[][] newCentroids = new double[k][data[0].length];
-            List<double[][]> results = new ArrayList<>();
+    //Warm start: the fit begins from the model's centroids instead of seeding, which on data close to what the
+    //model was fitted on converges in a few iterations. The model must have k centroids of the data's dimensions
+    //and the engine's distance metric, otherwise IllegalArgumentException is thrown before anything runs
+    public void fit(double[][] data, KMeansModel start) throws Exception {
+        fit(KMeansData.of(data), start);
+    }
 
+    public void fit(KMeansData data, KMeansModel start) throws Exception {
+        fit(data, start.warmStart(k, data.dims(), metric));
+    }
+
+    public void fit(KMeansData data) throws Exception {
+        fit(data, seeding);
+    }
+
+    private void fit(KMeansData data, Seeding initial) throws Exception {
+        centroids = initial.seed(data, k, newRandom(), null, 1);
+        metric.normalize(centroids);
+        boolean instrumented = listener != KMeansListener.NONE;
+        labels = instrumented ? newLabels(data.rows()) : null;
+        converged = false;
+        iterations = 0;
+        ClusterAccumulator accumulator = new ClusterAccumulator(k, data.dims());
+
+        //Clustering loop until convergence or maximum iterations
+        while (!converged && iterations < maxIterations) {
+            double[][] newCentroids = new double[k][data.dims()];
+            flatCentroids = DistanceKernel.flatten(centroids, flatCentroids);
+            long start = System.nanoTime();
+            //Single pass: every point is assigned once and added to its cluster's sum
+            assignAndSum(data, accumulator);
+            long assigned = System.nanoTime();
+            //Calculate new centroids
             for (int i = 0; i < k; i++) {
-                final int clusterIndex = i;
-                //Submits task to assign data points to nearest centroid and calculate sum
-                //Parallelizes the assignment step by assigning one thread per cluster
-                //Callable<double[][]> task = () -> assignAndSum(data, clusterIndex);
-                //results.add(executor.submit(task));
-                double[][] task = assignAndSum(data, clusterIndex);
-                results.add(task);
-            }
-            //Collect results and calculate new centroids
-            for (int i = 0; i < k; i++) {
-                double[][] sumAndCount = results.get(i);
-                if (sumAndCount[1][0] > 0) { // Avoid division by zero
-                    for (int j = 0; j < data[0].length; j++) {
-                        newCentroids[i][j] = sumAndCount[0][j] / sumAndCount[1][0];
-                    }
-                } else {
+                if (!accumulator.mean(i, newCentroids[i])) {
                     newCentroids[i] = centroids[i]; // If no points are assigned, retain old centroid
                 }
             }
+            metric.normalize(newCentroids);
+            long reduced = System.nanoTime();
 
-            convergence = checkConvergence(newCentroids);
+            double shift = largestShift(newCentroids);
+            converged = shift <= tolerance;
             centroids = newCentroids;
-            iteration++;
-        }
-    }
-    //Randomly select k data points as initial centroids
-    private double[][] initializeCentroids(double[][] data) {
-        Random random = new Random();
-        double[][] initialCentroids = new double[k][data[0].length];
-        for (int i = 0; i < k; i++) {
-            initialCentroids[i] = data[random.nextInt(data.length)];
-        }
-        return initialCentroids;
-    }
-    //Assigns data points to centroid and calculates sum
-    private double[][] assignAndSum(double[][] data, int clusterIndex) {
-        double[] sum = new double[data[0].length];
-        double count = 0;
-        for (double[] point : data) {
-            if (getNearestCentroid(point) == clusterIndex) {
-                for (int j = 0; j < point.length; j++) {
-                    sum[j] += point[j];
-                }
-                count++;
+            iterations++;
+            if (instrumented) {
+                listener.onIteration(new IterationStats(iterations, assigned - start, reduced - assigned,
+                        new long[] {assigned - start}, accumulator.inertia(), shift, accumulator.reassigned(),
+                        accumulator.emptyClusters()));
             }
         }
-        return new double[][]{sum, new double[]{count}};
     }
-    //Returns index of nearest centroid
-    private int getNearestCentroid(double[] point) {
-        int nearest = -1;
-        double minDistance = Double.MAX_VALUE;
-        for (int i = 0; i < k; i++) {
-            double dist = euclideanDistance(point, centroids[i]);
-            if (dist < minDistance) {
-                nearest = i;
-                minDistance = dist;
-            }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    //The centroids of the last fit with the engine's metric, to save or to warm-start a later fit
+    public KMeansModel getModel() {
+        if (centroids == null) {
+            throw new IllegalStateException("There is no model before the first fit.");
         }
-        return nearest;
+        return new KMeansModel(centroids, metric);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    //False when the last fit stopped because it reached maxIterations
+    public boolean hasConverged() {
+        return converged;
     }
-    //Calculates Euclidean distance between two points
-    private double euclideanDistance(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.pow(a[i] - b[i], 2);
+    //Seeded Random when setSeed was called, otherwise a fresh unseeded one
+    private Random newRandom() {
+        return seeded ? new Random(seed) : new Random();
+    }
+    //Assigns every data point to its nearest centroid and accumulates sums and counts
+    private void assignAndSum(KMeansData data, ClusterAccumulator accumulator) {
+        accumulator.reset();
+        for (int p = 0; p < data.rows(); p++) {
+            int nearest = metric.nearest(data, p, flatCentroids, k);
+            accumulator.add(data, p, nearest);
+            if (labels != null) {
+                accumulator.record(metric.distance(data, p, flatCentroids, nearest), labels[p] != nearest);
+                labels[p] = nearest;
+            }
         }
-        return Math.sqrt(sum);
     }
-    //Checks if centroids have moved less than tolerance
-    private boolean checkConvergence(double[][] newCentroids) {
+    //Largest distance any centroid moved, converged once it is within tolerance
+    private double largestShift(double[][] newCentroids) {
+        double largest = 0;
         for (int i = 0; i < k; i++) {
-            if (euclideanDistance(centroids[i], newCentroids[i]) > tolerance) {
-                return false;
-            }
+            largest = Math.max(largest, kernel.squaredDistance(centroids[i], newCentroids[i]));
         }
-        return true;
+        return Math.sqrt(largest);
+    }
+    //Labels before the first assignment, so every point counts as reassigned in the first iteration
+    private static int[] newLabels(int rows) {
+        int[] labels = new int[rows];
+        Arrays.fill(labels, -1);
+        return labels;
     }
 
     //Time Complexity: Sequentially O(n*k*d) where n is the number of data points, k is the number of clusters, and d is the number of dimensions per data point
@@ -118,4 +166,4 @@ public class SequentialKmeans {
             System.out.println(Arrays.toString(centroid));
         }
     }
-}
\ No newline at end of file
+}
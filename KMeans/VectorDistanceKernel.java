@@ -0,0 +1,66 @@
+package KMeans;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//SIMD squared distance, dot product and L1 distance over double storage, requires --add-modules jdk.incubator.vector
+//Only loaded through DistanceKernel.get(), float storage keeps the scalar loop
+final class VectorDistanceKernel extends DistanceKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(dims);
+        for (; j < bound; j += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, a, aOffset + j)
+                    .sub(DoubleVector.fromArray(SPECIES, b, bOffset + j));
+            acc = diff.fma(diff, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        // Remaining dimensions that do not fill a full vector
+        for (; j < dims; j++) {
+            double diff = a[aOffset + j] - b[bOffset + j];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(dims);
+        for (; j < bound; j += SPECIES.length()) {
+            acc = DoubleVector.fromArray(SPECIES, a, aOffset + j)
+                    .fma(DoubleVector.fromArray(SPECIES, b, bOffset + j), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < dims; j++) {
+            sum += a[aOffset + j] * b[bOffset + j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattanDistance(double[] a, int aOffset, double[] b, int bOffset, int dims) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int j = 0;
+        int bound = SPECIES.loopBound(dims);
+        for (; j < bound; j += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, aOffset + j)
+                    .sub(DoubleVector.fromArray(SPECIES, b, bOffset + j)).abs());
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < dims; j++) {
+            sum += Math.abs(a[aOffset + j] - b[bOffset + j]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,350 @@
+package LinRegression;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import Compute.ComputePool;
+
+//Factorization of a symmetric matrix for solving A x = b without forming the inverse
+//Symmetric positive definite matrices, such as the X^T X of the normal equations, get a blocked right-looking Cholesky A = L L^T:
+//each block column factors its diagonal block, solves the panel below it, then updates the trailing matrix in parallel
+//If a pivot is not safely positive (collinear features), it falls back to LDL^T with symmetric diagonal pivoting,
+//P^T A P = L D L^T, which stops at the numerical rank and leaves the coefficients of the dropped columns at zero
+public class CholeskyFactorization {
+    private static final int BLOCK = 64; // Columns per block column
+    private static final int PARALLEL_ROWS = 128; // Smaller trailing updates run on the calling thread
+    private static final double RELATIVE_PIVOT_TOLERANCE = 1e-12; // Pivots below this fraction of the largest diagonal are treated as zero
+
+    private final int n;
+    private final double[][] L; // Lower triangle holds the factor, unit diagonal implied for LDL^T
+    private final double[] D; // Diagonal of LDL^T, null for Cholesky
+    private final int[] perm; // perm[i] is the original index at position i, null for Cholesky
+    private final int rank; // Number of nonzero pivots
+
+    private CholeskyFactorization(double[][] L, double[] D, int[] perm, int rank) {
+        this.n = L.length;
+        this.L = L;
+        this.D = D;
+        this.perm = perm;
+        this.rank = rank;
+    }
+
+    public static CholeskyFactorization factor(double[][] A) {
+        return factor(A, ComputePool.shared());
+    }
+
+    public static CholeskyFactorization factor(double[][] A, ComputePool pool) {
+        int n = A.length;
+        for (double[] row : A) {
+            if (row.length != n) {
+                throw new IllegalArgumentException("Matrix must be square.");
+            }
+        }
+        double maxDiagonal = 0;
+        for (int i = 0; i < n; i++) {
+            maxDiagonal = Math.max(maxDiagonal, Math.abs(A[i][i]));
+        }
+        double tolerance = RELATIVE_PIVOT_TOLERANCE * maxDiagonal;
+        double[][] L = copyLower(A);
+        if (blockedCholesky(L, tolerance, pool)) {
+            return new CholeskyFactorization(L, null, null, n);
+        }
+        return pivotedLDLT(A, tolerance);
+    }
+
+    //True when the matrix was not positive definite and the pivoted LDL^T was used
+    public boolean isPivoted() {
+        return perm != null;
+    }
+
+    public int rank() {
+        return rank;
+    }
+
+    public double[] solve(double[] b) {
+        if (b.length != n) {
+            throw new IllegalArgumentException("Right-hand side must have " + n + " entries.");
+        }
+        return perm == null ? solveCholesky(b) : solveLDLT(b);
+    }
+
+    //Solves for several right-hand sides against the one factorization, rhs[t] is the t-th vector
+    public double[][] solve(double[][] rhs) {
+        return solve(rhs, ComputePool.shared());
+    }
+
+    public double[][] solve(double[][] rhs, ComputePool pool) {
+        double[][] solutions = new double[rhs.length][];
+        pool.invoke(new SolveTask(this, rhs, solutions, 0, rhs.length));
+        return solutions;
+    }
+
+    //Factors A in place into its lower triangle, false as soon as a pivot is not safely positive
+    private static boolean blockedCholesky(double[][] a, double tolerance, ComputePool pool) {
+        int n = a.length;
+        for (int k0 = 0; k0 < n; k0 += BLOCK) {
+            int k1 = Math.min(k0 + BLOCK, n);
+            // Diagonal block, unblocked Cholesky
+            for (int j = k0; j < k1; j++) {
+                double diagonal = a[j][j];
+                for (int p = k0; p < j; p++) {
+                    diagonal -= a[j][p] * a[j][p];
+                }
+                if (!(diagonal > tolerance)) {
+                    return false;
+                }
+                diagonal = Math.sqrt(diagonal);
+                a[j][j] = diagonal;
+                for (int i = j + 1; i < k1; i++) {
+                    double sum = a[i][j];
+                    for (int p = k0; p < j; p++) {
+                        sum -= a[i][p] * a[j][p];
+                    }
+                    a[i][j] = sum / diagonal;
+                }
+            }
+            if (k1 == n) {
+                break;
+            }
+            // Panel below the diagonal block, then the trailing update, each independent per row
+            // The trailing update of row i reads the panel rows j <= i, so the whole panel is finished first
+            runRows(new BlockColumnTask(a, k0, k1, k1, n, false), n - k1, pool);
+            runRows(new BlockColumnTask(a, k0, k1, k1, n, true), n - k1, pool);
+        }
+        return true;
+    }
+
+    private static void runRows(BlockColumnTask task, int rows, ComputePool pool) {
+        if (rows < PARALLEL_ROWS) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    //For rows [start, end) below a block column [k0, k1): either solve the panel row against the diagonal block,
+    //or subtract the panel's contribution from the row's part of the trailing lower triangle
+    private static class BlockColumnTask extends RecursiveAction {
+        private final double[][] a;
+        private final int k0, k1, start, end;
+        private final boolean update;
+
+        BlockColumnTask(double[][] a, int k0, int k1, int start, int end, boolean update) {
+            this.a = a;
+            this.k0 = k0;
+            this.k1 = k1;
+            this.start = start;
+            this.end = end;
+            this.update = update;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 16 || getPool() == null) {
+                for (int i = start; i < end; i++) {
+                    if (update) {
+                        updateRow(i);
+                    } else {
+                        solvePanelRow(i);
+                    }
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new BlockColumnTask(a, k0, k1, start, mid, update),
+                      new BlockColumnTask(a, k0, k1, mid, end, update));
+        }
+
+        // L21[i] = A21[i] * L11^-T
+        private void solvePanelRow(int i) {
+            double[] row = a[i];
+            for (int j = k0; j < k1; j++) {
+                double sum = row[j];
+                double[] pivotRow = a[j];
+                for (int p = k0; p < j; p++) {
+                    sum -= row[p] * pivotRow[p];
+                }
+                row[j] = sum / pivotRow[j];
+            }
+        }
+
+        // A22[i][j] -= L21[i] . L21[j] for k1 <= j <= i
+        private void updateRow(int i) {
+            double[] row = a[i];
+            for (int j = k1; j <= i; j++) {
+                double[] other = a[j];
+                double sum = 0;
+                for (int p = k0; p < k1; p++) {
+                    sum += row[p] * other[p];
+                }
+                row[j] -= sum;
+            }
+        }
+    }
+
+    //LDL^T with symmetric pivoting on the largest remaining diagonal
+    //Positive semidefinite input never needs 2 x 2 pivots, and a remaining diagonal below tolerance marks the numerical rank
+    private static CholeskyFactorization pivotedLDLT(double[][] A, double tolerance) {
+        int n = A.length;
+        double[][] a = new double[n][];
+        for (int i = 0; i < n; i++) {
+            a[i] = A[i].clone();
+        }
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        double[] D = new double[n];
+        int rank = n;
+        for (int k = 0; k < n; k++) {
+            int pivot = k;
+            for (int i = k + 1; i < n; i++) {
+                if (Math.abs(a[i][i]) > Math.abs(a[pivot][pivot])) {
+                    pivot = i;
+                }
+            }
+            if (!(Math.abs(a[pivot][pivot]) > tolerance)) {
+                rank = k; // The rest of the matrix is numerically zero
+                break;
+            }
+            if (pivot != k) {
+                swapSymmetric(a, k, pivot);
+                int temp = perm[k];
+                perm[k] = perm[pivot];
+                perm[pivot] = temp;
+            }
+            double d = a[k][k];
+            D[k] = d;
+            for (int i = k + 1; i < n; i++) {
+                a[i][k] /= d;
+            }
+            // Rank-1 update of the trailing lower triangle
+            for (int i = k + 1; i < n; i++) {
+                double lik = a[i][k] * d;
+                for (int j = k + 1; j <= i; j++) {
+                    a[i][j] -= lik * a[j][k];
+                }
+                // Keep the trailing block symmetric so later pivot swaps can read either triangle
+                for (int j = k + 1; j < i; j++) {
+                    a[j][i] = a[i][j];
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            a[i][i] = 1;
+            Arrays.fill(a[i], i + 1, n, 0);
+        }
+        return new CholeskyFactorization(a, D, perm, rank);
+    }
+
+    private static void swapSymmetric(double[][] a, int i, int j) {
+        double[] temp = a[i];
+        a[i] = a[j];
+        a[j] = temp;
+        for (double[] row : a) {
+            double value = row[i];
+            row[i] = row[j];
+            row[j] = value;
+        }
+    }
+
+    private static double[][] copyLower(double[][] A) {
+        int n = A.length;
+        double[][] L = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(A[i], 0, L[i], 0, i + 1);
+        }
+        return L;
+    }
+
+    //Forward substitution L z = b, then back substitution L^T x = z
+    private double[] solveCholesky(double[] b) {
+        double[] x = b.clone();
+        for (int i = 0; i < n; i++) {
+            double sum = x[i];
+            double[] row = L[i];
+            for (int p = 0; p < i; p++) {
+                sum -= row[p] * x[p];
+            }
+            x[i] = sum / row[i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int p = i + 1; p < n; p++) {
+                sum -= L[p][i] * x[p];
+            }
+            x[i] = sum / L[i][i];
+        }
+        return x;
+    }
+
+    //Same substitutions on the permuted system, with the components past the rank set to zero
+    private double[] solveLDLT(double[] b) {
+        double[] z = new double[n];
+        for (int i = 0; i < n; i++) {
+            z[i] = b[perm[i]];
+        }
+        for (int i = 0; i < rank; i++) {
+            double sum = z[i];
+            for (int p = 0; p < i; p++) {
+                sum -= L[i][p] * z[p];
+            }
+            z[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            z[i] = i < rank ? z[i] / D[i] : 0;
+        }
+        for (int i = rank - 1; i >= 0; i--) {
+            double sum = z[i];
+            for (int p = i + 1; p < rank; p++) {
+                sum -= L[p][i] * z[p];
+            }
+            z[i] = sum;
+        }
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[perm[i]] = z[i];
+        }
+        return x;
+    }
+
+    //Right-hand sides are independent, so they are split across the pool
+    private static class SolveTask extends RecursiveAction {
+        private final CholeskyFactorization factorization;
+        private final double[][] rhs;
+        private final double[][] solutions;
+        private final int start;
+        private final int end;
+
+        SolveTask(CholeskyFactorization factorization, double[][] rhs, double[][] solutions, int start, int end) {
+            this.factorization = factorization;
+            this.rhs = rhs;
+            this.solutions = solutions;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 4) {
+                for (int t = start; t < end; t++) {
+                    solutions[t] = factorization.solve(rhs[t]);
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new SolveTask(factorization, rhs, solutions, start, mid),
+                      new SolveTask(factorization, rhs, solutions, mid, end));
+        }
+    }
+
+    public static void main(String[] args) {
+        double[][] spd = {{4, 12, -16}, {12, 37, -43}, {-16, -43, 98}};
+        CholeskyFactorization cholesky = factor(spd);
+        System.out.println("Pivoted: " + cholesky.isPivoted());
+        System.out.println(Arrays.toString(cholesky.solve(new double[] {1, 2, 3})));
+
+        double[][] singular = {{1, 2}, {2, 4}}; // Collinear columns
+        CholeskyFactorization ldlt = factor(singular);
+        System.out.println("Pivoted: " + ldlt.isPivoted() + ", rank " + ldlt.rank());
+        System.out.println(Arrays.toString(ldlt.solve(new double[] {1, 2})));
+    }
+}
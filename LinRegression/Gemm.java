@@ -0,0 +1,319 @@
+package LinRegression;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import Compute.ComputePool;
+
+//Blocked, packed matrix multiply C = A * B on the fork-join pool
+//B is packed once into panels of NR columns laid out so the inner loop reads it sequentially,
+//A is packed per tile into panels of MR rows, and a MR x NR register block of C is accumulated in locals
+//Work is split over MC x NC tiles of C, and when C has too few tiles (the d x n times n x d of X^T X)
+//the shared dimension is split as well and the partial products are summed
+public class Gemm {
+    private static final int MR = 4; // Rows of C per register block
+    private static final int NR = 4; // Columns of C per register block
+    private static final int MC = 64; // Rows of C per tile, a packed A block of MC x KC stays in L2
+    private static final int NC = 256; // Columns of C per tile
+    private static final int KC = 256; // Depth of one packed block
+    private static final long SEQUENTIAL_FLOPS = 1L << 18; // Below this the pool is not worth the overhead
+
+    private static final ThreadLocal<double[]> PACKED_A = ThreadLocal.withInitial(() -> new double[MC * KC]);
+
+    public static double[][] multiply(double[][] a, double[][] b) {
+        return multiply(a, b, ComputePool.shared());
+    }
+
+    public static double[][] multiply(double[][] a, double[][] b, ComputePool pool) {
+        int n = a.length;
+        int depth = a[0].length;
+        int m = b[0].length;
+        if (depth != b.length) {
+            throw new IllegalArgumentException("Matrix dimensions must match for multiplication.");
+        }
+        double[][] c = new double[n][m];
+        multiplyAdd(a, 0, 0, b, 0, 0, c, 0, 0, n, m, depth, 1.0, pool);
+        return c;
+    }
+
+    //A^T * B without forming A^T: the packing of A reads the source rows directly, which is also the cache-friendly order
+    public static double[][] multiply(TransposedView a, double[][] b, ComputePool pool) {
+        int n = a.rows();
+        int depth = a.cols();
+        int m = b[0].length;
+        if (depth != b.length) {
+            throw new IllegalArgumentException("Matrix dimensions must match for multiplication.");
+        }
+        double[][] c = new double[n][m];
+        multiplyAdd(a.source(), true, 0, 0, b, 0, 0, c, 0, 0, n, m, depth, 1.0, pool);
+        return c;
+    }
+
+    //C[cRow:cRow+n, cCol:cCol+m] += alpha * A[aRow:aRow+n, aCol:aCol+depth] * B[bRow:bRow+depth, bCol:bCol+m]
+    //Works on blocks of larger matrices in place, which is what blocked factorizations need for their trailing updates
+    static void multiplyAdd(double[][] a, int aRow, int aCol, double[][] b, int bRow, int bCol,
+                            double[][] c, int cRow, int cCol, int n, int m, int depth, double alpha, ComputePool pool) {
+        multiplyAdd(a, false, aRow, aCol, b, bRow, bCol, c, cRow, cCol, n, m, depth, alpha, pool);
+    }
+
+    //Same with A read through its transpose when transposedA is set, element (i, k) of the A block at a[aCol + k][aRow + i]
+    private static void multiplyAdd(double[][] a, boolean transposedA, int aRow, int aCol, double[][] b, int bRow, int bCol,
+                                    double[][] c, int cRow, int cCol, int n, int m, int depth, double alpha, ComputePool pool) {
+        if (n == 0 || m == 0 || depth == 0) {
+            return;
+        }
+        double[] packedB = packB(b, bRow, bCol, depth, m, alpha);
+        long flops = (long) n * m * depth;
+        if (flops <= SEQUENTIAL_FLOPS) {
+            multiplyTile(new Operands(a, transposedA, aRow, aCol, packedB, c, cRow, cCol, m), 0, n, 0, m, 0, depth);
+            return;
+        }
+
+        int tiles = ((n + MC - 1) / MC) * ((m + NC - 1) / NC);
+        int depthBlocks = (depth + KC - 1) / KC;
+        int splits = Math.min(depthBlocks, Math.max(1, 2 * pool.parallelism() / tiles));
+        if (splits == 1) {
+            pool.invoke(new TileTask(new Operands(a, transposedA, aRow, aCol, packedB, c, cRow, cCol, m), 0, n, 0, m, 0, depth));
+            return;
+        }
+        // Too few tiles to keep every worker busy, so each split computes a partial C over a slice of the shared dimension
+        Operands[] partials = new Operands[splits];
+        partials[0] = new Operands(a, transposedA, aRow, aCol, packedB, c, cRow, cCol, m);
+        for (int s = 1; s < splits; s++) {
+            partials[s] = new Operands(a, transposedA, aRow, aCol, packedB, new double[n][m], 0, 0, m);
+        }
+        pool.invoke(new DepthSplitTask(partials, 0, splits, depthBlocks, depth, n));
+        for (int s = 1; s < splits; s++) {
+            for (int i = 0; i < n; i++) {
+                double[] row = c[cRow + i];
+                double[] partialRow = partials[s].c[i];
+                for (int j = 0; j < m; j++) {
+                    row[cCol + j] += partialRow[j];
+                }
+            }
+        }
+    }
+
+    //The matrices of one multiplyAdd call and where its blocks start, shared by all of its tasks
+    private static final class Operands {
+        final double[][] a;
+        final boolean transposedA; // A is read as a[col][row]
+        final int aRow, aCol;
+        final double[] packedB;
+        final double[][] c;
+        final int cRow, cCol;
+        final int m; // Columns of the B block, sets the packed layout
+
+        Operands(double[][] a, boolean transposedA, int aRow, int aCol, double[] packedB,
+                 double[][] c, int cRow, int cCol, int m) {
+            this.a = a;
+            this.transposedA = transposedA;
+            this.aRow = aRow;
+            this.aCol = aCol;
+            this.packedB = packedB;
+            this.c = c;
+            this.cRow = cRow;
+            this.cCol = cCol;
+            this.m = m;
+        }
+    }
+
+    //Packs alpha times the depth x m block of B at (bRow, bCol) into depth blocks of KC rows,
+    //each split into panels of NR columns padded with zeros
+    //Block starting at row k0 begins at k0 * paddedCols, panel jp of that block at jp * NR * blockDepth,
+    //and element (p, c) of the panel at p * NR + c
+    private static double[] packB(double[][] b, int bRow, int bCol, int depth, int m, double alpha) {
+        int paddedCols = roundUp(m, NR);
+        double[] packed = new double[depth * paddedCols];
+        for (int k0 = 0; k0 < depth; k0 += KC) {
+            int kl = Math.min(KC, depth - k0);
+            int blockStart = k0 * paddedCols;
+            for (int p = 0; p < kl; p++) {
+                double[] row = b[bRow + k0 + p];
+                for (int j = 0; j < m; j++) {
+                    packed[blockStart + (j / NR) * NR * kl + p * NR + j % NR] = alpha * row[bCol + j];
+                }
+            }
+        }
+        return packed;
+    }
+
+    //Packs rows [i0, i1) and columns [k0, k0 + kl) of A into panels of MR rows, element (r, p) at panel * MR * kl + p * MR + r
+    private static void packA(double[][] a, int i0, int i1, int k0, int kl, double[] packed) {
+        int panels = (i1 - i0 + MR - 1) / MR;
+        for (int ip = 0; ip < panels; ip++) {
+            int panelStart = ip * MR * kl;
+            for (int r = 0; r < MR; r++) {
+                int i = i0 + ip * MR + r;
+                if (i < i1) {
+                    double[] row = a[i];
+                    for (int p = 0; p < kl; p++) {
+                        packed[panelStart + p * MR + r] = row[k0 + p];
+                    }
+                } else {
+                    for (int p = 0; p < kl; p++) {
+                        packed[panelStart + p * MR + r] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    //Same layout as packA for the A whose element (i, k) is a[k][i], walking each source row once
+    private static void packTransposedA(double[][] a, int i0, int i1, int k0, int kl, double[] packed) {
+        int panels = (i1 - i0 + MR - 1) / MR;
+        for (int p = 0; p < kl; p++) {
+            double[] row = a[k0 + p];
+            for (int ip = 0; ip < panels; ip++) {
+                int base = ip * MR * kl + p * MR;
+                for (int r = 0; r < MR; r++) {
+                    int i = i0 + ip * MR + r;
+                    packed[base + r] = i < i1 ? row[i] : 0;
+                }
+            }
+        }
+    }
+
+    //Adds A[i0:i1, k0:k1] * B[k0:k1, j0:j1] into C, one packed depth block at a time, indices relative to the blocks
+    private static void multiplyTile(Operands ops, int i0, int i1, int j0, int j1, int k0, int k1) {
+        int paddedCols = roundUp(ops.m, NR);
+        double[] packedA = PACKED_A.get();
+        for (int kb = k0; kb < k1; kb += KC) {
+            int kl = Math.min(KC, k1 - kb);
+            int blockStart = kb * paddedCols;
+            for (int ib = i0; ib < i1; ib += MC) {
+                int ibEnd = Math.min(ib + MC, i1);
+                if (ops.transposedA) {
+                    packTransposedA(ops.a, ops.aRow + ib, ops.aRow + ibEnd, ops.aCol + kb, kl, packedA);
+                } else {
+                    packA(ops.a, ops.aRow + ib, ops.aRow + ibEnd, ops.aCol + kb, kl, packedA);
+                }
+                for (int j = j0; j < j1; j += NR) {
+                    int bOffset = blockStart + (j / NR) * NR * kl;
+                    int cols = Math.min(NR, j1 - j);
+                    for (int i = ib; i < ibEnd; i += MR) {
+                        int aOffset = ((i - ib) / MR) * MR * kl;
+                        microKernel(packedA, aOffset, ops.packedB, bOffset, kl, ops.c, ops.cRow + i, ops.cCol + j,
+                                    Math.min(MR, ibEnd - i), cols);
+                    }
+                }
+            }
+        }
+    }
+
+    //4 x 4 block of C held in 16 locals while walking the depth, then added into C
+    private static void microKernel(double[] a, int aOffset, double[] b, int bOffset, int kl,
+                                    double[][] c, int i, int j, int rows, int cols) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = 0; p < kl; p++) {
+            int ap = aOffset + p * MR;
+            int bp = bOffset + p * NR;
+            double a0 = a[ap], a1 = a[ap + 1], a2 = a[ap + 2], a3 = a[ap + 3];
+            double b0 = b[bp], b1 = b[bp + 1], b2 = b[bp + 2], b3 = b[bp + 3];
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+        }
+        if (rows == MR && cols == NR) {
+            double[] r0 = c[i], r1 = c[i + 1], r2 = c[i + 2], r3 = c[i + 3];
+            r0[j] += c00; r0[j + 1] += c01; r0[j + 2] += c02; r0[j + 3] += c03;
+            r1[j] += c10; r1[j + 1] += c11; r1[j + 2] += c12; r1[j + 3] += c13;
+            r2[j] += c20; r2[j + 1] += c21; r2[j + 2] += c22; r2[j + 3] += c23;
+            r3[j] += c30; r3[j + 1] += c31; r3[j + 2] += c32; r3[j + 3] += c33;
+            return;
+        }
+        // Partial block on the bottom or right edge of C
+        double[] block = {
+            c00, c01, c02, c03,
+            c10, c11, c12, c13,
+            c20, c21, c22, c23,
+            c30, c31, c32, c33
+        };
+        for (int r = 0; r < rows; r++) {
+            double[] row = c[i + r];
+            for (int col = 0; col < cols; col++) {
+                row[j + col] += block[r * NR + col];
+            }
+        }
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    //Splits the rows or columns of C in half until a task covers at most one MC x NC tile
+    private static class TileTask extends RecursiveAction {
+        private final Operands ops;
+        private final int i0, i1, j0, j1, k0, k1;
+
+        TileTask(Operands ops, int i0, int i1, int j0, int j1, int k0, int k1) {
+            this.ops = ops;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.j0 = j0;
+            this.j1 = j1;
+            this.k0 = k0;
+            this.k1 = k1;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = i1 - i0;
+            int cols = j1 - j0;
+            if (rows <= MC && cols <= NC) {
+                multiplyTile(ops, i0, i1, j0, j1, k0, k1);
+            } else if (rows * NC >= cols * MC) {
+                // Split on a multiple of MR so register blocks never straddle two tasks
+                int mid = i0 + roundUp(rows / 2, MR);
+                invokeAll(new TileTask(ops, i0, mid, j0, j1, k0, k1),
+                          new TileTask(ops, mid, i1, j0, j1, k0, k1));
+            } else {
+                // Split on a multiple of NR so each half starts on a packed panel boundary
+                int mid = j0 + roundUp(cols / 2, NR);
+                invokeAll(new TileTask(ops, i0, i1, j0, mid, k0, k1),
+                          new TileTask(ops, i0, i1, mid, j1, k0, k1));
+            }
+        }
+    }
+
+    //Gives each of the splits its own range of depth blocks and its own partial C
+    private static class DepthSplitTask extends RecursiveAction {
+        private final Operands[] partials;
+        private final int s0, s1, depthBlocks, depth, n;
+
+        DepthSplitTask(Operands[] partials, int s0, int s1, int depthBlocks, int depth, int n) {
+            this.partials = partials;
+            this.s0 = s0;
+            this.s1 = s1;
+            this.depthBlocks = depthBlocks;
+            this.depth = depth;
+            this.n = n;
+        }
+
+        @Override
+        protected void compute() {
+            if (s1 - s0 == 1) {
+                int splits = partials.length;
+                // Depth slices start on KC boundaries to match the packed layout of B
+                int k0 = (int) Math.min(depth, (long) depthBlocks * s0 / splits * KC);
+                int k1 = (int) Math.min(depth, (long) depthBlocks * (s0 + 1) / splits * KC);
+                Operands ops = partials[s0];
+                new TileTask(ops, 0, n, 0, ops.m, k0, k1).compute();
+            } else {
+                int mid = (s0 + s1) >>> 1;
+                invokeAll(new DepthSplitTask(partials, s0, mid, depthBlocks, depth, n),
+                          new DepthSplitTask(partials, mid, s1, depthBlocks, depth, n));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        double[][] m1 = {{1, 1, 2, 2}, {1, 2, 2, 3}};
+        double[][] m2 = {{1, 1}, {1, 2}, {2, 2}, {2, 3}};
+        for (double[] row : multiply(m1, m2)) {
+            System.out.println(Arrays.toString(row));
+        }
+    }
+}
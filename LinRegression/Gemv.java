@@ -0,0 +1,246 @@
+package LinRegression;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import Compute.ComputePool;
+
+//Matrix-vector products y = A x on the fork-join pool, for one vector or several at once
+//Tall matrices are split into blocks of rows of about BLOCK_ELEMENTS entries, each task writing its own slice of y
+//Wide matrices with few rows (the d x n shape of a regression) are split by columns instead, and the partial sums are added as the tasks join
+//With several vectors every row of A is read once for all of them, so t products cost one pass over A instead of t
+//A^T x for a TransposedView never forms A^T: each block of source rows adds its rows, scaled by x, into a partial result
+public class Gemv {
+    private static final int BLOCK_ELEMENTS = 1 << 15; // Entries of A per task, 256KB of doubles
+    private static final long SEQUENTIAL_ELEMENTS = 1L << 16; // Below this the pool is not worth the overhead
+
+    public static double[] multiply(double[][] a, double[] x) {
+        return multiply(a, x, ComputePool.shared());
+    }
+
+    public static double[] multiply(double[][] a, double[] x, ComputePool pool) {
+        return multiply(a, new double[][] {x}, pool)[0];
+    }
+
+    //result[t] = A vectors[t]
+    public static double[][] multiply(double[][] a, double[][] vectors) {
+        return multiply(a, vectors, ComputePool.shared());
+    }
+
+    public static double[][] multiply(double[][] a, double[][] vectors, ComputePool pool) {
+        int rows = a.length;
+        int cols = rows == 0 ? 0 : a[0].length;
+        for (double[] vector : vectors) {
+            if (vector.length != cols) {
+                throw new IllegalArgumentException("Matrix and vector dimensions must match.");
+            }
+        }
+        double[][] result = new double[vectors.length][rows];
+        long elements = (long) rows * cols;
+        if (elements <= SEQUENTIAL_ELEMENTS) {
+            multiplyRows(a, vectors, result, 0, rows, 0, cols);
+            return result;
+        }
+        int blockRows = Math.max(1, BLOCK_ELEMENTS / Math.max(1, cols));
+        if (rows >= 4 * pool.parallelism() || cols <= BLOCK_ELEMENTS) {
+            pool.invoke(new RowTask(a, vectors, result, 0, rows, blockRows));
+        } else {
+            // Too few rows to go around, so the columns are split and the partial products summed
+            int blockCols = Math.max(BLOCK_ELEMENTS / Math.max(1, rows), 1024);
+            double[][] sums = pool.invoke(new ColumnTask(a, vectors, 0, cols, blockCols));
+            for (int t = 0; t < vectors.length; t++) {
+                result[t] = sums[t];
+            }
+        }
+        return result;
+    }
+
+    //A^T x, with A^T read from its source
+    public static double[] multiply(TransposedView a, double[] x) {
+        return multiply(a, x, ComputePool.shared());
+    }
+
+    public static double[] multiply(TransposedView a, double[] x, ComputePool pool) {
+        return multiply(a, new double[][] {x}, pool)[0];
+    }
+
+    //result[t] = A^T vectors[t], one pass over the rows of the source for every vector together
+    public static double[][] multiply(TransposedView a, double[][] vectors) {
+        return multiply(a, vectors, ComputePool.shared());
+    }
+
+    public static double[][] multiply(TransposedView a, double[][] vectors, ComputePool pool) {
+        double[][] source = a.source();
+        int sourceRows = source.length;
+        for (double[] vector : vectors) {
+            if (vector.length != sourceRows) {
+                throw new IllegalArgumentException("Matrix and vector dimensions must match.");
+            }
+        }
+        int width = a.rows();
+        if ((long) sourceRows * width <= SEQUENTIAL_ELEMENTS) {
+            double[][] result = new double[vectors.length][width];
+            addScaledRows(source, vectors, result, 0, sourceRows);
+            return result;
+        }
+        int blockRows = Math.max(1, BLOCK_ELEMENTS / Math.max(1, width));
+        return pool.invoke(new TransposedTask(source, vectors, width, 0, sourceRows, blockRows));
+    }
+
+    //result[t][i] += row i of A, columns [c0, c1), dotted with vectors[t]
+    //Four rows at a time so each loaded vector entry is used four times
+    private static void multiplyRows(double[][] a, double[][] vectors, double[][] result, int r0, int r1, int c0, int c1) {
+        int i = r0;
+        for (; i + 4 <= r1; i += 4) {
+            double[] a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+            for (int t = 0; t < vectors.length; t++) {
+                double[] x = vectors[t];
+                double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                for (int j = c0; j < c1; j++) {
+                    double xj = x[j];
+                    s0 += a0[j] * xj;
+                    s1 += a1[j] * xj;
+                    s2 += a2[j] * xj;
+                    s3 += a3[j] * xj;
+                }
+                double[] out = result[t];
+                out[i] += s0;
+                out[i + 1] += s1;
+                out[i + 2] += s2;
+                out[i + 3] += s3;
+            }
+        }
+        for (; i < r1; i++) {
+            double[] row = a[i];
+            for (int t = 0; t < vectors.length; t++) {
+                double[] x = vectors[t];
+                double sum = 0;
+                for (int j = c0; j < c1; j++) {
+                    sum += row[j] * x[j];
+                }
+                result[t][i] += sum;
+            }
+        }
+    }
+
+    //result[t] += sum over source rows [r0, r1) of vectors[t][i] * row i
+    private static void addScaledRows(double[][] source, double[][] vectors, double[][] result, int r0, int r1) {
+        for (int i = r0; i < r1; i++) {
+            double[] row = source[i];
+            for (int t = 0; t < vectors.length; t++) {
+                double scale = vectors[t][i];
+                if (scale != 0) {
+                    double[] out = result[t];
+                    for (int j = 0; j < out.length; j++) {
+                        out[j] += scale * row[j];
+                    }
+                }
+            }
+        }
+    }
+
+    //Halves the rows until a block is at most blockRows, every block writes only its own rows of the result
+    private static class RowTask extends RecursiveAction {
+        private final double[][] a;
+        private final double[][] vectors;
+        private final double[][] result;
+        private final int start, end, blockRows;
+
+        RowTask(double[][] a, double[][] vectors, double[][] result, int start, int end, int blockRows) {
+            this.a = a;
+            this.vectors = vectors;
+            this.result = result;
+            this.start = start;
+            this.end = end;
+            this.blockRows = blockRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= blockRows) {
+                multiplyRows(a, vectors, result, start, end, 0, a[start].length);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new RowTask(a, vectors, result, start, mid, blockRows),
+                      new RowTask(a, vectors, result, mid, end, blockRows));
+        }
+    }
+
+    //Halves the columns until a block is at most blockCols, returns the partial products over its columns
+    private static class ColumnTask extends RecursiveTask<double[][]> {
+        private final double[][] a;
+        private final double[][] vectors;
+        private final int start, end, blockCols;
+
+        ColumnTask(double[][] a, double[][] vectors, int start, int end, int blockCols) {
+            this.a = a;
+            this.vectors = vectors;
+            this.start = start;
+            this.end = end;
+            this.blockCols = blockCols;
+        }
+
+        @Override
+        protected double[][] compute() {
+            if (end - start <= blockCols) {
+                double[][] partial = new double[vectors.length][a.length];
+                multiplyRows(a, vectors, partial, 0, a.length, start, end);
+                return partial;
+            }
+            int mid = (start + end) >>> 1;
+            ColumnTask left = new ColumnTask(a, vectors, start, mid, blockCols);
+            left.fork();
+            double[][] right = new ColumnTask(a, vectors, mid, end, blockCols).compute();
+            return addInto(left.join(), right);
+        }
+    }
+
+    //Halves the source rows until a block is at most blockRows, returns the partial A^T x over its rows
+    private static class TransposedTask extends RecursiveTask<double[][]> {
+        private final double[][] source;
+        private final double[][] vectors;
+        private final int width, start, end, blockRows;
+
+        TransposedTask(double[][] source, double[][] vectors, int width, int start, int end, int blockRows) {
+            this.source = source;
+            this.vectors = vectors;
+            this.width = width;
+            this.start = start;
+            this.end = end;
+            this.blockRows = blockRows;
+        }
+
+        @Override
+        protected double[][] compute() {
+            if (end - start <= blockRows) {
+                double[][] partial = new double[vectors.length][width];
+                addScaledRows(source, vectors, partial, start, end);
+                return partial;
+            }
+            int mid = (start + end) >>> 1;
+            TransposedTask left = new TransposedTask(source, vectors, width, start, mid, blockRows);
+            left.fork();
+            double[][] right = new TransposedTask(source, vectors, width, mid, end, blockRows).compute();
+            return addInto(left.join(), right);
+        }
+    }
+
+    private static double[][] addInto(double[][] target, double[][] other) {
+        for (int t = 0; t < target.length; t++) {
+            double[] row = target[t];
+            double[] add = other[t];
+            for (int j = 0; j < row.length; j++) {
+                row[j] += add[j];
+            }
+        }
+        return target;
+    }
+
+    //Time Complexity: O(r*c*t/p) for t vectors, reading A once
+    public static void main(String[] args) {
+        double[][] a = {{1, 1, 2, 2}, {1, 2, 2, 3}};
+        double[][] vectors = {{1, 0, 0, 1}, {1, 1, 1, 1}};
+        System.out.println(Arrays.deepToString(multiply(a, vectors)));
+        System.out.println(Arrays.toString(multiply(TransposedView.of(a), new double[] {1, 2})));
+    }
+}
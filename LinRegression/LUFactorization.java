@@ -0,0 +1,256 @@
+package LinRegression;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import Compute.ComputePool;
+
+//LU factorization with partial pivoting, P A = L U, for general square matrices
+//Blocked right-looking: each block column of NB columns is factored as a tall panel, the block row of U to its right
+//is solved against the panel's unit lower triangle, and the trailing matrix gets one GEMM update A22 -= L21 U12
+//Almost all of the O(n^3) work is in those GEMM updates, which run on the packed Gemm kernels
+//Row swaps exchange the row arrays, so they apply to L and to the unfactored columns at no cost
+public class LUFactorization {
+    private static final int NB = 64; // Columns per panel
+    private static final int COLUMN_GRAIN = 256; // Right-hand side columns per task in the triangular solves
+
+    private final int n;
+    private final double[][] lu; // Unit lower L below the diagonal, U on and above it
+    private final int[] perm; // Row i of P A is row perm[i] of A
+    private final boolean singular; // Whether some pivot was exactly zero
+    private final ComputePool pool;
+
+    private LUFactorization(double[][] lu, int[] perm, boolean singular, ComputePool pool) {
+        this.n = lu.length;
+        this.lu = lu;
+        this.perm = perm;
+        this.singular = singular;
+        this.pool = pool;
+    }
+
+    public static LUFactorization factor(double[][] A) {
+        return factor(A, ComputePool.shared());
+    }
+
+    public static LUFactorization factor(double[][] A, ComputePool pool) {
+        int n = A.length;
+        double[][] a = new double[n][];
+        for (int i = 0; i < n; i++) {
+            if (A[i].length != n) {
+                throw new IllegalArgumentException("Matrix must be square.");
+            }
+            a[i] = A[i].clone();
+        }
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        boolean singular = false;
+        for (int k0 = 0; k0 < n; k0 += NB) {
+            int start = k0;
+            int k1 = Math.min(k0 + NB, n);
+            singular |= factorPanel(a, perm, k0, k1);
+            if (k1 == n) {
+                break;
+            }
+            // U12 = L11^-1 A12, then A22 -= L21 U12
+            int trailing = n - k1;
+            pool.invoke(new ColumnTask(k1, n, (j0, j1) -> forwardSubstitute(a, a, start, k1, j0, j1)));
+            Gemm.multiplyAdd(a, k1, k0, a, k0, k1, a, k1, k1, trailing, trailing, k1 - k0, -1.0, pool);
+        }
+        return new LUFactorization(a, perm, singular, pool);
+    }
+
+    //Unblocked LU of the tall panel of columns [k0, k1) and rows [k0, n), true if a pivot was zero
+    //The panel is O(n * NB^2) of the O(n^3) work and runs on the calling thread
+    private static boolean factorPanel(double[][] a, int[] perm, int k0, int k1) {
+        int n = a.length;
+        boolean singular = false;
+        for (int j = k0; j < k1; j++) {
+            int pivot = j;
+            for (int i = j + 1; i < n; i++) {
+                if (Math.abs(a[i][j]) > Math.abs(a[pivot][j])) {
+                    pivot = i;
+                }
+            }
+            if (pivot != j) {
+                double[] temp = a[j];
+                a[j] = a[pivot];
+                a[pivot] = temp;
+                int index = perm[j];
+                perm[j] = perm[pivot];
+                perm[pivot] = index;
+            }
+            double[] pivotRow = a[j];
+            double diagonal = pivotRow[j];
+            if (diagonal == 0) {
+                singular = true; // Nothing to eliminate in this column, carry on so the rest is still factored
+                continue;
+            }
+            for (int i = j + 1; i < n; i++) {
+                double[] row = a[i];
+                double factor = row[j] / diagonal;
+                row[j] = factor;
+                if (factor != 0) {
+                    for (int c = j + 1; c < k1; c++) {
+                        row[c] -= factor * pivotRow[c];
+                    }
+                }
+            }
+        }
+        return singular;
+    }
+
+    public boolean isSingular() {
+        return singular;
+    }
+
+    //Product of the pivots with the sign of the permutation
+    public double determinant() {
+        double det = 1;
+        for (int i = 0; i < n; i++) {
+            det *= lu[i][i];
+        }
+        int[] seen = perm.clone();
+        for (int i = 0; i < n; i++) {
+            // Every cycle of length l contributes l - 1 transpositions
+            while (seen[i] != i) {
+                int next = seen[i];
+                seen[i] = seen[next];
+                seen[next] = next;
+                det = -det;
+            }
+        }
+        return det;
+    }
+
+    public double[] solve(double[] b) {
+        if (b.length != n) {
+            throw new IllegalArgumentException("Right-hand side must have " + n + " entries.");
+        }
+        double[][] B = new double[n][1];
+        for (int i = 0; i < n; i++) {
+            B[i][0] = b[i];
+        }
+        double[][] X = solveMatrix(B);
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = X[i][0];
+        }
+        return x;
+    }
+
+    //X with A X = B for an n x r matrix B, every column of B is a right-hand side
+    public double[][] solveMatrix(double[][] B) {
+        if (B.length != n) {
+            throw new IllegalArgumentException("Right-hand side must have " + n + " rows.");
+        }
+        if (singular) {
+            throw new RuntimeException("Matrix is singular.");
+        }
+        int r = n == 0 ? 0 : B[0].length;
+        double[][] X = new double[n][];
+        for (int i = 0; i < n; i++) {
+            X[i] = B[perm[i]].clone();
+        }
+        // L Y = P B, block row by block row: solve against the diagonal block, then a GEMM update of the rows below
+        for (int k0 = 0; k0 < n; k0 += NB) {
+            int start = k0;
+            int k1 = Math.min(k0 + NB, n);
+            pool.invoke(new ColumnTask(0, r, (j0, j1) -> forwardSubstitute(lu, X, start, k1, j0, j1)));
+            if (k1 < n) {
+                Gemm.multiplyAdd(lu, k1, k0, X, k0, 0, X, k1, 0, n - k1, r, k1 - k0, -1.0, pool);
+            }
+        }
+        // U X = Y, the same from the last block row up
+        for (int k1 = n; k1 > 0; k1 -= NB) {
+            int k0 = Math.max(0, k1 - NB);
+            int end = k1;
+            pool.invoke(new ColumnTask(0, r, (j0, j1) -> backSubstitute(lu, X, k0, end, j0, j1)));
+            if (k0 > 0) {
+                Gemm.multiplyAdd(lu, 0, k0, X, k0, 0, X, 0, 0, k0, r, k1 - k0, -1.0, pool);
+            }
+        }
+        return X;
+    }
+
+    public double[][] inverse() {
+        double[][] identity = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            identity[i][i] = 1.0;
+        }
+        return solveMatrix(identity);
+    }
+
+    //Rows [k0, k1) of X, columns [j0, j1), against the unit lower diagonal block of lu
+    private static void forwardSubstitute(double[][] lu, double[][] X, int k0, int k1, int j0, int j1) {
+        for (int i = k0; i < k1; i++) {
+            double[] row = X[i];
+            double[] l = lu[i];
+            for (int p = k0; p < i; p++) {
+                double factor = l[p];
+                if (factor != 0) {
+                    double[] source = X[p];
+                    for (int j = j0; j < j1; j++) {
+                        row[j] -= factor * source[j];
+                    }
+                }
+            }
+        }
+    }
+
+    //Rows [k0, k1) of X, columns [j0, j1), against the upper diagonal block of lu
+    private static void backSubstitute(double[][] lu, double[][] X, int k0, int k1, int j0, int j1) {
+        for (int i = k1 - 1; i >= k0; i--) {
+            double[] row = X[i];
+            double[] u = lu[i];
+            for (int p = i + 1; p < k1; p++) {
+                double factor = u[p];
+                if (factor != 0) {
+                    double[] source = X[p];
+                    for (int j = j0; j < j1; j++) {
+                        row[j] -= factor * source[j];
+                    }
+                }
+            }
+            double diagonal = u[i];
+            for (int j = j0; j < j1; j++) {
+                row[j] /= diagonal;
+            }
+        }
+    }
+
+    private interface ColumnKernel {
+        void apply(int j0, int j1);
+    }
+
+    //Columns of the right-hand side are independent in a triangular solve, so they are split across the pool
+    private static class ColumnTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+        private final ColumnKernel kernel;
+
+        ColumnTask(int start, int end, ColumnKernel kernel) {
+            this.start = start;
+            this.end = end;
+            this.kernel = kernel;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= COLUMN_GRAIN) {
+                kernel.apply(start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ColumnTask(start, mid, kernel), new ColumnTask(mid, end, kernel));
+        }
+    }
+
+    //Time Complexity: O(n^3/p) for the factorization, with O(n * NB^2) of it in the sequential panels
+    //and n/NB joins instead of one per pivot
+    public static void main(String[] args) {
+        double[][] matrix = {{1, 3, 2, 2}, {2, 3, 1, 1}, {3, 3, 3, 1}, {1, 4, 4, 2}};
+        LUFactorization lu = factor(matrix);
+        System.out.println("Determinant: " + lu.determinant());
+        System.out.println(Arrays.toString(lu.solve(new double[] {1, 2, 3, 4})));
+    }
+}
@@ -10,29 +10,11 @@ public class LinearRegression {
     }
     public static double[] solve(double[][] X, double[] y, boolean print) {
         try{
-            double[][] Xt = Transpose.transpose(X); // Step 1: Transpose of X
-            // System.out.println("After Transpose");
-            // System.out.println(Arrays.deepToString(Xt));
-
-            double[][] XtX = new MatMult(new double[][][] {Xt, X}).solve(); // Step 2: Multiply Xt by X 
-            // System.out.println("After XtX Multiplication");
-            // System.out.println(Arrays.deepToString(Xt));
-            // System.out.println(Arrays.deepToString(XtX));
-
-            double[][] XtX_inv = Inverse.invert(XtX); // Step 3: Invert XtX 
-            // System.out.println("After Inversion");
-            // System.out.println(Arrays.deepToString(Xt));
-            // System.out.println(Arrays.deepToString(XtX));
-            // System.out.println(Arrays.deepToString(XtX_inv));
-
-            double[][] XtX_inv_Xt = new MatMult(new double[][][] {XtX_inv, Xt}).solve(); // Step 4: Multiply the inverse by Xt (CORRECT UP TO HERE)
-            // System.out.println("After XtX_inv, Xt Multiplication");
-            // System.out.println(Arrays.deepToString(Xt));
-            // System.out.println(Arrays.deepToString(XtX));
-            // System.out.println(Arrays.deepToString(XtX_inv));
-            // System.out.println(Arrays.deepToString(XtX_inv_Xt));
-
-            double[] beta = MatMult.multiplyMatrixVector(XtX_inv_Xt, y); // Step 5: Multiply by y vector to get coefficients
+            // Step 1: Accumulate XtX and Xty in one parallel pass over the rows, without materializing Xt
+            NormalEquations normal = NormalEquations.compute(X, y);
+
+            // Step 2: Factor the d x d XtX and solve XtX beta = Xty, without forming the inverse
+            double[] beta = CholeskyFactorization.factor(normal.gram()).solve(normal.xty());
             
             if (print) {
                 System.out.println("Regression coefficients:");
@@ -48,4 +30,31 @@ public class LinearRegression {
             return null;        
         }
     }
+    //Fits the coefficients and keeps them with the row count and residual sum of squares, ready to save
+    public static RegressionModel fit(double[][] X, double[] y) {
+        return fit(NormalEquations.compute(X, y));
+    }
+
+    //Warm start: adds the rows to the statistics of earlier rows, typically NormalEquations.load of the last run,
+    //and fits over old and new rows together without reading the old ones again
+    //previous gains the new rows, so saving it afterwards carries everything seen to the next run
+    public static RegressionModel fit(double[][] X, double[] y, NormalEquations previous) {
+        previous.merge(NormalEquations.compute(X, y));
+        return fit(previous);
+    }
+
+    public static RegressionModel fit(NormalEquations normal) {
+        double[] beta = normal.solve();
+        return new RegressionModel(beta, normal.count(), normal.residualSumOfSquares(beta));
+    }
+
+    //Fits one coefficient vector per target, targets[t] is the t-th outcome vector
+    //XtX is accumulated and factored once and every target only costs an Xty and two triangular solves
+    public static double[][] solve(double[][] X, double[][] targets) {
+        if (targets.length == 0) {
+            throw new IllegalArgumentException("At least one target is needed.");
+        }
+        CholeskyFactorization factorization = CholeskyFactorization.factor(NormalEquations.computeGram(X));
+        return factorization.solve(NormalEquations.projectTargets(X, targets));
+    }
 }
@@ -1,8 +1,10 @@
 package LinRegression;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import Compute.ComputePool;
 
 public class LinearRegressionSplitting {
     // Input will be each line of the x file will be a 
@@ -10,45 +12,110 @@ public class LinearRegressionSplitting {
     private double[] y;
     private double[][] coefs;
     private double[] finalCoefs;
+    private NormalEquations statistics; // Merged shard statistics in SUFFICIENT_STATISTICS mode
     
+    // How the shards are turned into one set of coefficients
+    public enum Mode {
+        AVERAGE, // Fit every shard with LinearRegression and average the coefficients
+        SEQUENTIAL_AVERAGE, // Fit every shard with SequentialLinearRegression and average the coefficients
+        TSQR, // Combine the QR factors of the shards, exact least-squares coefficients
+        SUFFICIENT_STATISTICS // Sum the X^T X, X^T y, y^T y and n of the shards and solve once, exact and mergeable
+    }
+
     // Constructor will add x and y to appropriate variables from a csv file, calc regression coefficients for each split, and 
     public LinearRegressionSplitting(double[][] x, double[] y, int maxShards, boolean sequential) {
-        try {
-            this.x = x;
-            this.y = y;
-            coefs = new double[maxShards][x[0].length];
-            ExecutorService executorService = Executors.newFixedThreadPool(Math.min(Runtime.getRuntime().availableProcessors(), maxShards));
+        this(x, y, maxShards, sequential ? Mode.SEQUENTIAL_AVERAGE : Mode.AVERAGE);
+    }
 
+    public LinearRegressionSplitting(double[][] x, double[] y, int maxShards, Mode mode) {
+        this.x = x;
+        this.y = y;
+        if (mode == Mode.TSQR) {
+            // The shards are factored in parallel on the shared pool and merged in a reduction tree
+            finalCoefs = LinRegression.TSQR.fit(x, y, maxShards, ComputePool.shared()).getCoefficients();
+            return;
+        }
+        if (mode == Mode.SUFFICIENT_STATISTICS) {
+            statistics = computeStatistics(maxShards);
+            finalCoefs = statistics.solve();
+            return;
+        }
+        boolean sequential = mode == Mode.SEQUENTIAL_AVERAGE;
+        // Every shard is fitted on the shared pool, coefs[i] stays null until shard i has returned
+        ComputePool pool = ComputePool.shared();
+        List<Future<double[]>> shards = new ArrayList<>();
+        for (int i = 0; i < maxShards; i++) {
+            int j = i;
+            shards.add(pool.submit(() -> getCoefficientsSplit(maxShards, j, sequential)));
+        }
+        coefs = new double[maxShards][];
+        try {
             for (int i = 0; i < maxShards; i++) {
-                int j = i;
-               executorService.execute(() -> {
-                    coefs[j] = getCoefficientsSplit(maxShards, j, sequential);
-                    }
-                );
-            } 
-            executorService.shutdown();
-            executorService.awaitTermination(10, TimeUnit.SECONDS);
-
-        } catch (Exception e) {}
+                coefs[i] = shards.get(i).get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to fit the shards.", e);
+        }
 
-        finalCoefs = new double[coefs[0].length];
+        finalCoefs = new double[x[0].length];
         //Average to get final coefficients
         // Fill with 0
         Arrays.fill(finalCoefs, 0);
-        // For each set of coefficients (splits)
+        // For each set of coefficients (splits), skipping shards whose system could not be solved
+        int fitted = 0;
         for (int i = 0; i < maxShards; i++) {
+            if (coefs[i] == null) {
+                continue;
+            }
+            fitted++;
             // for each feature coefficient in a split
             for (int j = 0; j < coefs[i].length; j++) {
                 finalCoefs[j] += coefs[i][j];
             }
         }
+        if (fitted == 0) {
+            finalCoefs = null; // Every shard failed, same as LinearRegression.solve returning null
+            return;
+        }
 
         //Divide
         for (int i = 0; i < finalCoefs.length; i++) {
-            finalCoefs[i] /= maxShards;
+            finalCoefs[i] /= fitted;
         }
     }
 
+    // Statistics of every shard, accumulated in parallel and then merged in shard order
+    private NormalEquations computeStatistics(int numSplits) {
+        ComputePool pool = ComputePool.shared();
+        List<Future<NormalEquations>> shards = new ArrayList<>();
+        for (int i = 0; i < numSplits; i++) {
+            int start = i * (x.length / numSplits);
+            int end = i == numSplits - 1 ? x.length : (i + 1) * (x.length / numSplits);
+            shards.add(pool.submit(() -> shardStatistics(x, y, start, end)));
+        }
+        NormalEquations total = new NormalEquations(x[0].length);
+        try {
+            for (Future<NormalEquations> shard : shards) {
+                total.merge(shard.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Failed to compute shard statistics.", e);
+        }
+        return total;
+    }
+
+    // Sufficient statistics of rows [start, end), which can be cached and merged into the statistics of other shards
+    public static NormalEquations shardStatistics(double[][] x, double[] y, int start, int end) {
+        NormalEquations shard = new NormalEquations(x[0].length);
+        shard.addRows(x, y, start, end);
+        return shard;
+    }
+
+    // Merged statistics of all shards in SUFFICIENT_STATISTICS mode, null otherwise
+    public NormalEquations getStatistics() {
+        return statistics;
+    }
+
     // Will calculate error for split num
     public double calcError(String fileNameString) {
         double error = 0;
@@ -88,4 +155,14 @@ public class LinearRegressionSplitting {
     public double[] getCoeffs() {
         return this.finalCoefs;
     }
+
+    // The final coefficients as a model that can be saved, null when every shard failed
+    // The residual sum of squares is only known in SUFFICIENT_STATISTICS mode and NaN otherwise
+    public RegressionModel getModel() {
+        if (finalCoefs == null) {
+            return null;
+        }
+        double rss = statistics == null ? Double.NaN : statistics.residualSumOfSquares(finalCoefs);
+        return new RegressionModel(finalCoefs, x.length, rss);
+    }
 }
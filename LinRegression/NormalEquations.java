@@ -0,0 +1,279 @@
+package LinRegression;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+import Compute.ComputePool;
+
+//X^T X and X^T y for the normal equations (X^T X) beta = X^T y, accumulated in one pass over the rows of X
+//Never builds X^T or any n x d intermediate: every row adds its outer product to a d x d sum,
+//so the memory is O(d^2) however many rows there are
+//X^T X is symmetric, so only the upper triangle is accumulated and gram() mirrors it
+//Together with y^T y and the row count these are sufficient statistics for least squares:
+//sums over any split of the rows merge into exactly the sums over all of them, so shards can be cached and added later
+public class NormalEquations {
+    private static final int MIN_ROWS_PER_TASK = 1024;
+    private static final int MAGIC = 0x50444D4E; // "PDMN"
+    private static final int FORMAT_VERSION = 2; // Written by writeTo, bumped whenever the layout changes
+    private static final int MAX_FEATURES = 1 << 15; // Largest d a file may claim, so d * d stays within an int
+
+    private final int d; // Number of features
+    private final double[] xtx; // Row-major d x d, only entries with column >= row are filled
+    private final double[] xty;
+    private double yty;
+    private long count; // Number of rows accumulated
+
+    public NormalEquations(int d) {
+        this.d = d;
+        this.xtx = new double[d * d];
+        this.xty = new double[d];
+    }
+
+    public static NormalEquations compute(double[][] X, double[] y) {
+        return compute(X, y, ComputePool.shared());
+    }
+
+    //Every fork-join task accumulates its own block of rows into a private partial,
+    //and the partials are summed pairwise as the tasks join
+    public static NormalEquations compute(double[][] X, double[] y, ComputePool pool) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("X and y must have the same number of rows.");
+        }
+        int grain = Math.max(MIN_ROWS_PER_TASK, X.length / (4 * pool.parallelism()));
+        return pool.invoke(new AccumulateTask(X, y, 0, X.length, grain));
+    }
+
+    //X^T X alone, for callers that project their targets separately with projectTargets
+    public static double[][] computeGram(double[][] X) {
+        return computeGram(X, ComputePool.shared());
+    }
+
+    public static double[][] computeGram(double[][] X, ComputePool pool) {
+        int grain = Math.max(MIN_ROWS_PER_TASK, X.length / (4 * pool.parallelism()));
+        return pool.invoke(new AccumulateTask(X, null, 0, X.length, grain)).gram();
+    }
+
+    //X^T y for several targets in one pass over X, targets[t] is the t-th outcome vector
+    //Pairs with computeGram(X) so many targets share one X^T X and one factorization of it
+    public static double[][] projectTargets(double[][] X, double[][] targets) {
+        return projectTargets(X, targets, ComputePool.shared());
+    }
+
+    public static double[][] projectTargets(double[][] X, double[][] targets, ComputePool pool) {
+        for (double[] target : targets) {
+            if (target.length != X.length) {
+                throw new IllegalArgumentException("X and every target must have the same number of rows.");
+            }
+        }
+        // The fused transposed product of Gemv, X^T is never formed
+        return Gemv.multiply(TransposedView.of(X), targets, pool);
+    }
+
+    //Adds rows [start, end) of X and y
+    public void addRows(double[][] X, double[] y, int start, int end) {
+        for (int r = start; r < end; r++) {
+            double[] row = X[r];
+            if (row.length != d) {
+                throw new IllegalArgumentException("Row " + r + " has " + row.length + " features, expected " + d + ".");
+            }
+            double target = y[r];
+            yty += target * target;
+            for (int i = 0; i < d; i++) {
+                double xi = row[i];
+                xty[i] += xi * target;
+                int offset = i * d;
+                for (int j = i; j < d; j++) {
+                    xtx[offset + j] += xi * row[j];
+                }
+            }
+        }
+        count += end - start;
+    }
+
+    //Adds rows [start, end) of X to X^T X only, leaving X^T y and y^T y untouched
+    private void addGramRows(double[][] X, int start, int end) {
+        for (int r = start; r < end; r++) {
+            double[] row = X[r];
+            if (row.length != d) {
+                throw new IllegalArgumentException("Row " + r + " has " + row.length + " features, expected " + d + ".");
+            }
+            for (int i = 0; i < d; i++) {
+                double xi = row[i];
+                int offset = i * d;
+                for (int j = i; j < d; j++) {
+                    xtx[offset + j] += xi * row[j];
+                }
+            }
+        }
+        count += end - start;
+    }
+
+    //Adds another set of sums into this one
+    public void merge(NormalEquations other) {
+        if (other.d != d) {
+            throw new IllegalArgumentException("Cannot merge normal equations of different dimensions.");
+        }
+        for (int i = 0; i < xtx.length; i++) {
+            xtx[i] += other.xtx[i];
+        }
+        for (int i = 0; i < d; i++) {
+            xty[i] += other.xty[i];
+        }
+        yty += other.yty;
+        count += other.count;
+    }
+
+    //Coefficients beta of (X^T X) beta = X^T y for every row added so far
+    public double[] solve() {
+        return CholeskyFactorization.factor(gram()).solve(xty);
+    }
+
+    //Sum of (y - X beta)^2 over the rows added, from the sums alone: y^T y - 2 beta^T X^T y + beta^T X^T X beta
+    public double residualSumOfSquares(double[] beta) {
+        double rss = yty;
+        for (int i = 0; i < d; i++) {
+            rss -= 2 * beta[i] * xty[i];
+            double quadratic = xtx[i * d + i] * beta[i];
+            for (int j = i + 1; j < d; j++) {
+                quadratic += 2 * xtx[i * d + j] * beta[j];
+            }
+            rss += beta[i] * quadratic;
+        }
+        return Math.max(0, rss);
+    }
+
+    //Full symmetric d x d X^T X
+    public double[][] gram() {
+        double[][] gram = new double[d][d];
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                gram[i][j] = xtx[i * d + j];
+                gram[j][i] = xtx[i * d + j];
+            }
+        }
+        return gram;
+    }
+
+    public double[] xty() {
+        return xty.clone();
+    }
+
+    public double yty() {
+        return yty;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public int dims() {
+        return d;
+    }
+
+    //Binary layout: magic, version, d, count, y^T y, the upper triangle of X^T X row by row, then X^T y
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(d);
+        out.writeLong(count);
+        out.writeDouble(yty);
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                out.writeDouble(xtx[i * d + j]);
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            out.writeDouble(xty[i]);
+        }
+    }
+
+    public static NormalEquations readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a normal equations file.");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported normal equations format version " + version + ".");
+        }
+        int d = in.readInt();
+        if (d < 1 || d > MAX_FEATURES) {
+            throw new IOException("Corrupt normal equations: " + d + " features.");
+        }
+        NormalEquations normal = new NormalEquations(d);
+        normal.count = in.readLong();
+        normal.yty = in.readDouble();
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                normal.xtx[i * d + j] = in.readDouble();
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            normal.xty[i] = in.readDouble();
+        }
+        return normal;
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writeTo(out);
+        }
+    }
+
+    public static NormalEquations load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readFrom(in);
+        }
+    }
+
+    //Splits the rows in half until a block is at most grain rows, a null y accumulating X^T X only
+    private static class AccumulateTask extends RecursiveTask<NormalEquations> {
+        private final double[][] X;
+        private final double[] y;
+        private final int start;
+        private final int end;
+        private final int grain;
+
+        AccumulateTask(double[][] X, double[] y, int start, int end, int grain) {
+            this.X = X;
+            this.y = y;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected NormalEquations compute() {
+            if (end - start <= grain) {
+                NormalEquations partial = new NormalEquations(X[0].length);
+                if (y == null) {
+                    partial.addGramRows(X, start, end);
+                } else {
+                    partial.addRows(X, y, start, end);
+                }
+                return partial;
+            }
+            int mid = (start + end) >>> 1;
+            AccumulateTask left = new AccumulateTask(X, y, start, mid, grain);
+            left.fork();
+            NormalEquations right = new AccumulateTask(X, y, mid, end, grain).compute();
+            NormalEquations merged = left.join();
+            merged.merge(right);
+            return merged;
+        }
+    }
+
+    public static void main(String[] args) {
+        double[][] X = {{1, 1}, {1, 2}, {2, 2}, {2, 3}};
+        double[] y = {6, 8, 9, 11};
+        NormalEquations normal = compute(X, y);
+        System.out.println("X^T X = " + Arrays.deepToString(normal.gram()));
+        System.out.println("X^T y = " + Arrays.toString(normal.xty()));
+    }
+}
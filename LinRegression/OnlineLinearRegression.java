@@ -0,0 +1,242 @@
+package LinRegression;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+//Online linear regression by recursive least squares
+//Keeps P, the inverse of the (forgetting-weighted) X^T X, and updates it with the Sherman-Morrison formula,
+//so each new row costs O(d^2) instead of a refit over every row seen so far
+//With a forgetting factor lambda < 1 a row seen t updates ago is weighted by lambda^t, so the model tracks drift
+//P starts as initialVariance * I, which acts like a ridge penalty of 1 / initialVariance that fades as rows arrive
+//Updates are serialized on this object; readers get an immutable Snapshot published after every update
+//through a volatile field, so predictions never wait for ingest
+//save and load keep the whole state, P included, so a restarted process continues exactly where the last one stopped
+public class OnlineLinearRegression {
+    private static final int MAGIC = 0x50444D4F; // "PDMO"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_FEATURES = 1 << 15; // Largest d a file may claim, so d * d stays within an int
+
+    private final int d; // Number of features
+    private final double forgettingFactor; // lambda in (0, 1], 1 keeps every row at full weight
+    private final double[] p; // Row-major d x d inverse covariance
+    private final double[] beta;
+    private final double[] px; // Scratch for P x
+    private long observations;
+    private volatile Snapshot snapshot;
+
+    public OnlineLinearRegression(int d) {
+        this(d, 1.0, 1e6);
+    }
+
+    public OnlineLinearRegression(int d, double forgettingFactor) {
+        this(d, forgettingFactor, 1e6);
+    }
+
+    public OnlineLinearRegression(int d, double forgettingFactor, double initialVariance) {
+        if (d < 1) {
+            throw new IllegalArgumentException("Number of features must be positive.");
+        }
+        if (!(forgettingFactor > 0 && forgettingFactor <= 1)) {
+            throw new IllegalArgumentException("Forgetting factor must be in (0, 1].");
+        }
+        if (!(initialVariance > 0)) {
+            throw new IllegalArgumentException("Initial variance must be positive.");
+        }
+        this.d = d;
+        this.forgettingFactor = forgettingFactor;
+        this.p = new double[d * d];
+        this.beta = new double[d];
+        this.px = new double[d];
+        for (int i = 0; i < d; i++) {
+            p[i * d + i] = initialVariance;
+        }
+        this.snapshot = new Snapshot(beta.clone(), 0);
+    }
+
+    //Warm start from coefficients fitted elsewhere, for example by LinearRegression.fit
+    //The coefficients act as the prior mean and P starts again from initialVariance * I, as no covariance is saved with them
+    public OnlineLinearRegression(RegressionModel start, double forgettingFactor, double initialVariance) {
+        this(start.dims(), forgettingFactor, initialVariance);
+        System.arraycopy(start.getCoefficients(), 0, beta, 0, d);
+        observations = start.getObservations();
+        publish();
+    }
+
+    //Adds one observation and publishes the new coefficients
+    public synchronized void update(double[] x, double y) {
+        addRow(x, y);
+        publish();
+    }
+
+    //Adds rows [start, end) one after the other and publishes once at the end
+    public synchronized void update(double[][] X, double[] y, int start, int end) {
+        for (int r = start; r < end; r++) {
+            addRow(X[r], y[r]);
+        }
+        publish();
+    }
+
+    public void update(double[][] X, double[] y) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("X and y must have the same number of rows.");
+        }
+        update(X, y, 0, X.length);
+    }
+
+    //k = P x / (lambda + x^T P x), beta += k (y - x^T beta), P = (P - k x^T P) / lambda
+    private void addRow(double[] x, double y) {
+        if (x.length != d) {
+            throw new IllegalArgumentException("Row has " + x.length + " features, expected " + d + ".");
+        }
+        double denominator = forgettingFactor;
+        double error = y;
+        for (int i = 0; i < d; i++) {
+            double sum = 0;
+            int offset = i * d;
+            for (int j = 0; j < d; j++) {
+                sum += p[offset + j] * x[j];
+            }
+            px[i] = sum;
+            denominator += x[i] * sum;
+            error -= x[i] * beta[i];
+        }
+        double gain = error / denominator;
+        for (int i = 0; i < d; i++) {
+            beta[i] += px[i] * gain;
+        }
+        // P is symmetric, so x^T P = (P x)^T; the upper triangle is updated and mirrored to keep it exactly symmetric
+        double scale = 1.0 / forgettingFactor;
+        for (int i = 0; i < d; i++) {
+            double ki = px[i] / denominator;
+            int offset = i * d;
+            for (int j = i; j < d; j++) {
+                double value = (p[offset + j] - ki * px[j]) * scale;
+                p[offset + j] = value;
+                p[j * d + i] = value;
+            }
+        }
+        observations++;
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(beta.clone(), observations);
+    }
+
+    //Latest published coefficients, never blocks on a running update
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public double[] getCoefficients() {
+        return snapshot.getCoefficients();
+    }
+
+    public int dims() {
+        return d;
+    }
+
+    //The latest published coefficients as a model that can be saved, with no residual sum of squares
+    public RegressionModel toModel() {
+        Snapshot current = snapshot;
+        return new RegressionModel(current.coefficients, current.observations, Double.NaN);
+    }
+
+    //Binary layout: magic, version, d, forgetting factor, observations, P row by row, then the coefficients
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(d);
+        out.writeDouble(forgettingFactor);
+        out.writeLong(observations);
+        for (double value : p) {
+            out.writeDouble(value);
+        }
+        for (double value : beta) {
+            out.writeDouble(value);
+        }
+    }
+
+    public static OnlineLinearRegression readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an online regression state.");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported online regression format version " + version + ".");
+        }
+        int d = in.readInt();
+        double forgettingFactor = in.readDouble();
+        if (d < 1 || d > MAX_FEATURES || !(forgettingFactor > 0 && forgettingFactor <= 1)) {
+            throw new IOException("Corrupt online regression state: " + d + " features, forgetting factor "
+                    + forgettingFactor + ".");
+        }
+        OnlineLinearRegression online = new OnlineLinearRegression(d, forgettingFactor);
+        online.observations = in.readLong();
+        for (int i = 0; i < online.p.length; i++) {
+            online.p[i] = in.readDouble();
+        }
+        for (int i = 0; i < d; i++) {
+            online.beta[i] = in.readDouble();
+        }
+        online.publish();
+        return online;
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writeTo(out);
+        }
+    }
+
+    public static OnlineLinearRegression load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readFrom(in);
+        }
+    }
+
+    //Coefficients as of some number of observations, safe to share between threads
+    public static final class Snapshot {
+        private final double[] coefficients;
+        private final long observations;
+
+        Snapshot(double[] coefficients, long observations) {
+            this.coefficients = coefficients;
+            this.observations = observations;
+        }
+
+        public double[] getCoefficients() {
+            return coefficients.clone();
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public double predict(double[] x) {
+            double value = 0;
+            for (int i = 0; i < coefficients.length; i++) {
+                value += coefficients[i] * x[i];
+            }
+            return value;
+        }
+    }
+
+    //Time Complexity: O(d^2) per row, independent of how many rows came before
+    public static void main(String[] args) {
+        double[][] X = {{1, 1}, {1, 2}, {2, 2}, {2, 3}}; // Same data as LinearRegression
+        double[] y = {6, 8, 9, 11};
+        OnlineLinearRegression online = new OnlineLinearRegression(2);
+        for (int i = 0; i < X.length; i++) {
+            online.update(X[i], y[i]);
+            Snapshot snapshot = online.snapshot();
+            System.out.println(snapshot.getObservations() + " rows: " + Arrays.toString(snapshot.getCoefficients()));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package LinRegression;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+//Fitted linear regression coefficients, kept after the fit so a later job can predict without refitting
+//The rows fitted and their residual sum of squares travel with the coefficients, the sum NaN when it is unknown
+//Binary layout: magic, version, d, observations, residual sum of squares, then the d coefficients
+public final class RegressionModel {
+    private static final int MAGIC = 0x50444D52; // "PDMR"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_FEATURES = 1 << 24; // Largest coefficient count a file may claim
+
+    private final double[] coefficients;
+    private final long observations;
+    private final double residualSumOfSquares;
+
+    public RegressionModel(double[] coefficients, long observations, double residualSumOfSquares) {
+        this.coefficients = coefficients.clone();
+        this.observations = observations;
+        this.residualSumOfSquares = residualSumOfSquares;
+    }
+
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    public int dims() {
+        return coefficients.length;
+    }
+
+    public long getObservations() {
+        return observations;
+    }
+
+    public double getResidualSumOfSquares() {
+        return residualSumOfSquares;
+    }
+
+    public double predict(double[] x) {
+        if (x.length != coefficients.length) {
+            throw new IllegalArgumentException("Row has " + x.length + " features, expected " + coefficients.length + ".");
+        }
+        double value = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            value += coefficients[i] * x[i];
+        }
+        return value;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(coefficients.length);
+        out.writeLong(observations);
+        out.writeDouble(residualSumOfSquares);
+        for (double coefficient : coefficients) {
+            out.writeDouble(coefficient);
+        }
+    }
+
+    public static RegressionModel readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a regression model.");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported regression model format version " + version + ".");
+        }
+        int d = in.readInt();
+        if (d < 1 || d > MAX_FEATURES) {
+            throw new IOException("Corrupt regression model: " + d + " coefficients.");
+        }
+        double[] coefficients = new double[d];
+        long observations = in.readLong();
+        double residualSumOfSquares = in.readDouble();
+        for (int i = 0; i < coefficients.length; i++) {
+            coefficients[i] = in.readDouble();
+        }
+        return new RegressionModel(coefficients, observations, residualSumOfSquares);
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writeTo(out);
+        }
+    }
+
+    public static RegressionModel load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readFrom(in);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(coefficients) + " from " + observations + " rows";
+    }
+}
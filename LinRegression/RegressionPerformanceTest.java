@@ -38,7 +38,7 @@ public class RegressionPerformanceTest {
 
         try (FileWriter writer = new FileWriter("LinRegression/performance.csv")) {
             // Write CSV header
-            writer.append("DataPoints,SequentialTime,ParallelTime,ParallelNoSplitTime,SequentialSplittingTime\n");
+            writer.append("DataPoints,SequentialTime,ParallelTime,ParallelNoSplitTime,SequentialSplittingTime,TSQRTime\n");
 
             for (int n = stepSize; n <= maxDataPoints; n += stepSize) {
                 // Generate random data
@@ -68,14 +68,20 @@ public class RegressionPerformanceTest {
                 LinearRegressionSplitting sp = new LinearRegressionSplitting(X, y, 4, true);
                 long sequentialSplittingTime = System.currentTimeMillis() - startTime;
 
+                // Measure performance of the exact sharded solve (QR of each split, combined in a tree)
+                startTime = System.currentTimeMillis();
+                LinearRegressionSplitting qr = new LinearRegressionSplitting(X, y, 4, LinearRegressionSplitting.Mode.TSQR);
+                long tsqrTime = System.currentTimeMillis() - startTime;
+
                 // Write results to CSV
-                writer.append(String.format("%d,%d,%d,%d,%d\n", n, sequentialTime, parallelTime, parallelNoSplittingTime,sequentialSplittingTime));
+                writer.append(String.format("%d,%d,%d,%d,%d,%d\n", n, sequentialTime, parallelTime, parallelNoSplittingTime,sequentialSplittingTime,tsqrTime));
                 writer.flush();
                 System.out.println("************************** " + Integer.toString(n) + " Data Points");
                 System.out.println(Arrays.toString(lr.getCoefficients()));
                 System.out.println(Arrays.toString(l.getCoeffs()));
                 System.out.println(Arrays.toString(lrp));
                 System.out.println(Arrays.toString(sp.getCoeffs()));
+                System.out.println(Arrays.toString(qr.getCoeffs()));
                 System.out.println("*************************");
                 System.out.println();
             }
@@ -0,0 +1,214 @@
+package LinRegression;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+import Compute.ComputePool;
+
+//Tall-skinny QR least squares: exact coefficients from shards of rows factored in parallel
+//Every shard runs a Householder QR of its rows of the augmented matrix [X | y], keeping only the (d+1) x (d+1) R
+//Two R factors stacked on top of each other are factored again, so the shards are combined pairwise up a tree
+//The final R = [R11 z; 0 rho] gives R11 beta = z, the same solution as one QR of all of X,
+//and rho^2 is the residual sum of squares
+//Works on X directly rather than X^T X, so the condition number is not squared as with the normal equations
+public class TSQR {
+    private final int d; // Number of features
+    private final double[][] r; // Upper triangular (d+1) x (d+1) R of [X | y]
+    private final double[] coefficients;
+    private final long rows; // Number of rows fitted
+
+    private TSQR(double[][] r, long rows) {
+        this.d = r.length - 1;
+        this.r = r;
+        this.rows = rows;
+        this.coefficients = backSubstitute(r, d);
+    }
+
+    public static TSQR fit(double[][] X, double[] y) {
+        ComputePool pool = ComputePool.shared();
+        return fit(X, y, pool.parallelism(), pool);
+    }
+
+    public static TSQR fit(double[][] X, double[] y, int shards, ComputePool pool) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("X and y must have the same number of rows.");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Number of shards must be positive.");
+        }
+        int d = X[0].length;
+        if (X.length < d) {
+            throw new IllegalArgumentException("Least squares needs at least as many rows as features.");
+        }
+        // Every shard needs at least d + 1 rows for its R to carry information
+        shards = Math.max(1, Math.min(shards, X.length / (d + 1)));
+        return new TSQR(pool.invoke(new ReduceTask(X, y, shards, 0, shards)), X.length);
+    }
+
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    public double getResidualSumOfSquares() {
+        return r[d][d] * r[d][d];
+    }
+
+    //The coefficients with the row count and residual sum of squares, ready to save
+    public RegressionModel toModel() {
+        return new RegressionModel(coefficients, rows, getResidualSumOfSquares());
+    }
+
+    //R factor of X alone, with R^T R = X^T X
+    public double[][] getR() {
+        double[][] r11 = new double[d][];
+        for (int i = 0; i < d; i++) {
+            r11[i] = Arrays.copyOf(r[i], d);
+        }
+        return r11;
+    }
+
+    //Rows of shard s out of the given count, as in LinearRegressionSplitting but with the remainder spread over the shards
+    private static int shardStart(int rows, int shards, int s) {
+        return (int) ((long) rows * s / shards);
+    }
+
+    //R of rows [start, end) of [X | y]
+    private static double[][] factorShard(double[][] X, double[] y, int start, int end) {
+        int d = X[0].length;
+        double[][] block = new double[end - start][d + 1];
+        for (int i = start; i < end; i++) {
+            double[] row = X[i];
+            if (row.length != d) {
+                throw new IllegalArgumentException("Row " + i + " has " + row.length + " features, expected " + d + ".");
+            }
+            System.arraycopy(row, 0, block[i - start], 0, d);
+            block[i - start][d] = y[i];
+        }
+        return householderR(block);
+    }
+
+    //R of the two stacked upper triangular factors
+    private static double[][] combine(double[][] top, double[][] bottom) {
+        int c = top.length;
+        double[][] stacked = new double[2 * c][];
+        for (int i = 0; i < c; i++) {
+            stacked[i] = top[i];
+            stacked[c + i] = bottom[i];
+        }
+        return householderR(stacked);
+    }
+
+    //Householder QR of the m x c matrix a in place, returns the c x c upper triangle of R padded with zero rows
+    //Each reflection reads the rows in order, first to form w = v^T A, then to apply A -= tau v w
+    private static double[][] householderR(double[][] a) {
+        int m = a.length;
+        int c = a[0].length;
+        double[] w = new double[c];
+        int steps = Math.min(m, c);
+        for (int j = 0; j < steps; j++) {
+            // Scaled by the largest entry so the sum of squares cannot overflow or underflow
+            double scale = 0;
+            for (int i = j; i < m; i++) {
+                scale = Math.max(scale, Math.abs(a[i][j]));
+            }
+            if (scale == 0) {
+                continue; // Column is already zero below the diagonal
+            }
+            double sumOfSquares = 0;
+            for (int i = j; i < m; i++) {
+                double value = a[i][j] / scale;
+                sumOfSquares += value * value;
+            }
+            double norm = scale * Math.sqrt(sumOfSquares);
+            double alpha = a[j][j] > 0 ? -norm : norm;
+            double v0 = a[j][j] - alpha;
+            // v = (v0, a[j+1][j], ..., a[m-1][j]), tau = 2 / v^T v with v^T v = -2 alpha v0
+            double tau = -1.0 / (alpha * v0);
+            Arrays.fill(w, j + 1, c, 0);
+            for (int i = j; i < m; i++) {
+                double vi = i == j ? v0 : a[i][j];
+                if (vi != 0) {
+                    double[] row = a[i];
+                    for (int k = j + 1; k < c; k++) {
+                        w[k] += vi * row[k];
+                    }
+                }
+            }
+            for (int i = j; i < m; i++) {
+                double vi = i == j ? v0 : a[i][j];
+                if (vi != 0) {
+                    double factor = tau * vi;
+                    double[] row = a[i];
+                    for (int k = j + 1; k < c; k++) {
+                        row[k] -= factor * w[k];
+                    }
+                }
+            }
+            a[j][j] = alpha;
+            for (int i = j + 1; i < m; i++) {
+                a[i][j] = 0;
+            }
+        }
+        double[][] r = new double[c][c];
+        for (int i = 0; i < steps; i++) {
+            System.arraycopy(a[i], i, r[i], i, c - i);
+        }
+        return r;
+    }
+
+    //Solves R11 beta = z from the first d rows of R
+    private static double[] backSubstitute(double[][] r, int d) {
+        double maxDiagonal = 0;
+        for (int i = 0; i < d; i++) {
+            maxDiagonal = Math.max(maxDiagonal, Math.abs(r[i][i]));
+        }
+        double[] beta = new double[d];
+        for (int i = d - 1; i >= 0; i--) {
+            if (Math.abs(r[i][i]) <= 1e-12 * maxDiagonal) {
+                throw new RuntimeException("X does not have full column rank.");
+            }
+            double sum = r[i][d];
+            for (int k = i + 1; k < d; k++) {
+                sum -= r[i][k] * beta[k];
+            }
+            beta[i] = sum / r[i][i];
+        }
+        return beta;
+    }
+
+    //Factors shards [s0, s1) and combines their R factors as the halves join
+    private static class ReduceTask extends RecursiveTask<double[][]> {
+        private final double[][] X;
+        private final double[] y;
+        private final int shards;
+        private final int s0;
+        private final int s1;
+
+        ReduceTask(double[][] X, double[] y, int shards, int s0, int s1) {
+            this.X = X;
+            this.y = y;
+            this.shards = shards;
+            this.s0 = s0;
+            this.s1 = s1;
+        }
+
+        @Override
+        protected double[][] compute() {
+            if (s1 - s0 == 1) {
+                return factorShard(X, y, shardStart(X.length, shards, s0), shardStart(X.length, shards, s1));
+            }
+            int mid = (s0 + s1) >>> 1;
+            ReduceTask left = new ReduceTask(X, y, shards, s0, mid);
+            left.fork();
+            double[][] right = new ReduceTask(X, y, shards, mid, s1).compute();
+            return combine(left.join(), right);
+        }
+    }
+
+    //Time Complexity: O(n*d^2/p) for the shards and O(d^3 log p) for the reduction tree
+    public static void main(String[] args) {
+        double[][] X = {{1, 1}, {1, 2}, {2, 2}, {2, 3}, {3, 5}, {4, 4}, {5, 7}, {6, 6}};
+        double[] y = {6, 8, 9, 11, 16, 16, 22, 21};
+        TSQR qr = fit(X, y, 2, ComputePool.shared());
+        System.out.println("Regression coefficients: " + Arrays.toString(qr.getCoefficients()));
+        System.out.println("Residual sum of squares: " + qr.getResidualSumOfSquares());
+    }
+}
@@ -1,9 +1,12 @@
 package LinRegression;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RecursiveAction;
+import Compute.ComputePool;
 
 public class Transpose {
+    private static final int TILE = 32; // Side of the blocks copied directly, 32 rows of 32 doubles is 8KB per side
+    private static final long PARALLEL_ELEMENTS = 1L << 16; // Smaller matrices are transposed on the calling thread
+    private static final int FORK_ELEMENTS = 1 << 14; // Blocks below this are not split into separate tasks
+
     public static void main(String[] args) {
         double[][] matrix = {
             {1, 2, 3},
@@ -23,31 +26,184 @@ public class Transpose {
     //Time complexity: Sequentially O(n^2) 
     //if you were to have n processors, the time complexity would be O(n)
     public static double[][] transpose(double[][] matrix) {
+        return transpose(matrix, ComputePool.shared());
+    }
+
+    //Recursively halves the longer side of the source until a block is at most TILE x TILE, then copies it
+    //Each block reads TILE source rows and writes TILE destination rows, so both stay in cache
+    //Tasks write disjoint blocks of the destination: a split on source columns gives each half its own destination rows,
+    //while a split on source rows gives both halves the same destination rows in separate column ranges
+    public static double[][] transpose(double[][] matrix, ComputePool pool) {
         int rows = matrix.length;
         int cols = matrix[0].length;
         double[][] transposed = new double[cols][rows];
-        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
-        for (int i = 0; i < rows; i++) {
-            int finalI = i;
-            // Loop through each row of the original matrix 
-            // Submit a task to the executor to transpose the row
-            executor.submit(() -> {
-                for (int j = 0; j < cols; j++) {
-                    transposed[j][finalI] = matrix[finalI][j];
-                }
-            });
+        TransposeTask task = new TransposeTask(matrix, transposed, 0, rows, 0, cols);
+        if ((long) rows * cols <= PARALLEL_ELEMENTS) {
+            task.compute();
+        } else {
+            pool.invoke(task);
         }
+        return transposed;
+    }
 
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
-                executor.shutdownNow();
+    //Transposes a square matrix in place, swapping each block above the diagonal with its mirror below it
+    public static void transposeInPlace(double[][] matrix) {
+        transposeInPlace(matrix, ComputePool.shared());
+    }
+
+    public static void transposeInPlace(double[][] matrix, ComputePool pool) {
+        int n = matrix.length;
+        for (double[] row : matrix) {
+            if (row.length != n) {
+                throw new IllegalArgumentException("In-place transpose needs a square matrix.");
             }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
         }
+        DiagonalTask task = new DiagonalTask(matrix, 0, n);
+        if ((long) n * n <= PARALLEL_ELEMENTS) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+    }
 
-        return transposed;
+    //Copies source[r0:r1, c0:c1] into destination[c0:c1, r0:r1]
+    private static class TransposeTask extends RecursiveAction {
+        private final double[][] source;
+        private final double[][] destination;
+        private final int r0, r1, c0, c1;
+
+        TransposeTask(double[][] source, double[][] destination, int r0, int r1, int c0, int c1) {
+            this.source = source;
+            this.destination = destination;
+            this.r0 = r0;
+            this.r1 = r1;
+            this.c0 = c0;
+            this.c1 = c1;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = r1 - r0;
+            int cols = c1 - c0;
+            if (rows <= TILE && cols <= TILE) {
+                copyTransposed(source, destination, r0, r1, c0, c1);
+                return;
+            }
+            TransposeTask first;
+            TransposeTask second;
+            if (rows >= cols) {
+                int mid = r0 + rows / 2;
+                first = new TransposeTask(source, destination, r0, mid, c0, c1);
+                second = new TransposeTask(source, destination, mid, r1, c0, c1);
+            } else {
+                int mid = c0 + cols / 2;
+                first = new TransposeTask(source, destination, r0, r1, c0, mid);
+                second = new TransposeTask(source, destination, r0, r1, mid, c1);
+            }
+            if ((long) rows * cols <= FORK_ELEMENTS || getPool() == null) {
+                first.compute();
+                second.compute();
+            } else {
+                invokeAll(first, second);
+            }
+        }
+    }
+
+    private static void copyTransposed(double[][] source, double[][] destination, int r0, int r1, int c0, int c1) {
+        for (int j = c0; j < c1; j++) {
+            double[] out = destination[j];
+            for (int i = r0; i < r1; i++) {
+                out[i] = source[i][j];
+            }
+        }
+    }
+
+    //Transposes the diagonal block [start, end) x [start, end) in place:
+    //its two diagonal quadrants recursively, and its off-diagonal quadrants by swapping them with each other
+    private static class DiagonalTask extends RecursiveAction {
+        private final double[][] matrix;
+        private final int start, end;
+
+        DiagonalTask(double[][] matrix, int start, int end) {
+            this.matrix = matrix;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            int size = end - start;
+            if (size <= TILE) {
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        double value = matrix[i][j];
+                        matrix[i][j] = matrix[j][i];
+                        matrix[j][i] = value;
+                    }
+                }
+                return;
+            }
+            int mid = start + size / 2;
+            RecursiveAction[] parts = {
+                new DiagonalTask(matrix, start, mid),
+                new DiagonalTask(matrix, mid, end),
+                new SwapTask(matrix, start, mid, mid, end)
+            };
+            if ((long) size * size <= FORK_ELEMENTS || getPool() == null) {
+                for (RecursiveAction part : parts) {
+                    part.invoke();
+                }
+            } else {
+                invokeAll(parts);
+            }
+        }
+    }
+
+    //Swaps matrix[i][j] with matrix[j][i] for rows [r0, r1) and columns [c0, c1) above the diagonal
+    private static class SwapTask extends RecursiveAction {
+        private final double[][] matrix;
+        private final int r0, r1, c0, c1;
+
+        SwapTask(double[][] matrix, int r0, int r1, int c0, int c1) {
+            this.matrix = matrix;
+            this.r0 = r0;
+            this.r1 = r1;
+            this.c0 = c0;
+            this.c1 = c1;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = r1 - r0;
+            int cols = c1 - c0;
+            if (rows <= TILE && cols <= TILE) {
+                for (int i = r0; i < r1; i++) {
+                    double[] row = matrix[i];
+                    for (int j = c0; j < c1; j++) {
+                        double value = row[j];
+                        row[j] = matrix[j][i];
+                        matrix[j][i] = value;
+                    }
+                }
+                return;
+            }
+            SwapTask first;
+            SwapTask second;
+            if (rows >= cols) {
+                int mid = r0 + rows / 2;
+                first = new SwapTask(matrix, r0, mid, c0, c1);
+                second = new SwapTask(matrix, mid, r1, c0, c1);
+            } else {
+                int mid = c0 + cols / 2;
+                first = new SwapTask(matrix, r0, r1, c0, mid);
+                second = new SwapTask(matrix, r0, r1, mid, c1);
+            }
+            if ((long) rows * cols <= FORK_ELEMENTS || getPool() == null) {
+                first.compute();
+                second.compute();
+            } else {
+                invokeAll(first, second);
+            }
+        }
     }
 }
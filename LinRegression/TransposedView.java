@@ -0,0 +1,43 @@
+package LinRegression;
+import Compute.ComputePool;
+
+//The transpose of a matrix without copying it: element (i, j) of the view is element (j, i) of the source
+//Reads are strided, so a single get is for occasional access; bulk work should take the view whole,
+//as Gemm.multiply(TransposedView, double[][], ComputePool) does to form A^T B with no A^T in memory
+public final class TransposedView {
+    private final double[][] source;
+
+    private TransposedView(double[][] source) {
+        this.source = source;
+    }
+
+    public static TransposedView of(double[][] matrix) {
+        return new TransposedView(matrix);
+    }
+
+    public int rows() {
+        return source.length == 0 ? 0 : source[0].length;
+    }
+
+    public int cols() {
+        return source.length;
+    }
+
+    public double get(int row, int col) {
+        return source[col][row];
+    }
+
+    //The untransposed matrix, shared rather than copied
+    public double[][] source() {
+        return source;
+    }
+
+    //Copies the view into a new matrix with the blocked transpose
+    public double[][] materialize() {
+        return Transpose.transpose(source);
+    }
+
+    public double[][] materialize(ComputePool pool) {
+        return Transpose.transpose(source, pool);
+    }
+}
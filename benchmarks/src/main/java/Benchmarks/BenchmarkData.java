@@ -0,0 +1,61 @@
+package Benchmarks;
+import java.util.Random;
+
+//Deterministic inputs shared by the benchmarks, so every run and every parameter set sees the same data
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    //n points around k well separated Gaussian centres in d dimensions
+    static double[][] clusteredPoints(int n, int d, int k, long seed) {
+        Random random = new Random(seed);
+        double[][] centres = new double[k][d];
+        for (double[] centre : centres) {
+            for (int j = 0; j < d; j++) {
+                centre[j] = random.nextDouble() * 100;
+            }
+        }
+        double[][] points = new double[n][d];
+        for (int i = 0; i < n; i++) {
+            double[] centre = centres[random.nextInt(k)];
+            for (int j = 0; j < d; j++) {
+                points[i][j] = centre[j] + random.nextGaussian() * 5;
+            }
+        }
+        return points;
+    }
+
+    static double[][] matrix(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        double[][] matrix = new double[rows][cols];
+        for (double[] row : matrix) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = random.nextDouble() * 2 - 1;
+            }
+        }
+        return matrix;
+    }
+
+    //Diagonally dominant, so it is well conditioned and always invertible
+    static double[][] invertibleMatrix(int n, long seed) {
+        double[][] matrix = matrix(n, n, seed);
+        for (int i = 0; i < n; i++) {
+            matrix[i][i] += n;
+        }
+        return matrix;
+    }
+
+    //y = X beta + noise for a fixed beta
+    static double[] targets(double[][] X, long seed) {
+        Random random = new Random(seed);
+        double[] y = new double[X.length];
+        for (int i = 0; i < X.length; i++) {
+            double value = 0;
+            for (int j = 0; j < X[i].length; j++) {
+                value += (j + 1) * X[i][j];
+            }
+            y[i] = value + random.nextGaussian();
+        }
+        return y;
+    }
+}
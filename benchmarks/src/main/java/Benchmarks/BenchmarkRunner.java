@@ -0,0 +1,42 @@
+package Benchmarks;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Runs the benchmarks with warm-up in forked JVMs and the GC profiler, and writes every score to a CSV file
+//  java -jar benchmarks/target/benchmarks.jar                      everything, results in jmh-results.csv
+//  java -jar benchmarks/target/benchmarks.jar KMeans -p threads=1,4 -p n=100000
+//Any standard JMH option is accepted and overrides the defaults below
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("--add-modules", "jdk.incubator.vector");
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.CSV);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-results.csv");
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("Benchmarks\\..*Benchmark\\..*");
+        }
+        if (!commandLine.getWarmupIterations().hasValue()) {
+            options.warmupIterations(5);
+        }
+        if (!commandLine.getMeasurementIterations().hasValue()) {
+            options.measurementIterations(5);
+        }
+        if (!commandLine.getForkCount().hasValue()) {
+            options.forks(2);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package Benchmarks;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import Compute.ComputePool;
+import KMeans.KMeansData;
+import KMeans.ParallelKMeans_Cluster;
+import KMeans.ParallelKMeans_Partition;
+
+//One full fit per invocation, always MAX_ITERATIONS iterations (tolerance 0) from the same seed,
+//so the variants and thread counts do the same amount of work and differ only in how it is run
+//The single-threaded baseline is SequentialKMeansBenchmark, which has no threads parameter
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KMeansBenchmark {
+    static final int MAX_ITERATIONS = 10;
+    static final long SEED = 42;
+
+    @Param({"100000", "1000000"})
+    public int n;
+
+    @Param({"2", "16"})
+    public int d;
+
+    @Param({"8", "64"})
+    public int k;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private KMeansData data;
+    private ComputePool pool;
+
+    @Setup
+    public void setup() {
+        data = KMeansData.of(BenchmarkData.clusteredPoints(n, d, k, SEED));
+        pool = new ComputePool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public ParallelKMeans_Cluster parallelCluster() throws Exception {
+        ParallelKMeans_Cluster kMeans = new ParallelKMeans_Cluster(k, MAX_ITERATIONS, 0, pool, true);
+        kMeans.setSeed(SEED);
+        kMeans.fit(data);
+        return kMeans;
+    }
+
+    @Benchmark
+    public ParallelKMeans_Partition parallelPartition() throws Exception {
+        ParallelKMeans_Partition kMeans = new ParallelKMeans_Partition(k, MAX_ITERATIONS, 0, pool);
+        kMeans.setSeed(SEED);
+        kMeans.fit(data);
+        return kMeans;
+    }
+
+    @Benchmark
+    public ParallelKMeans_Partition parallelPartitionHamerly() throws Exception {
+        ParallelKMeans_Partition kMeans = new ParallelKMeans_Partition(k, MAX_ITERATIONS, 0, pool);
+        kMeans.setStrategy(ParallelKMeans_Partition.Strategy.HAMERLY);
+        kMeans.setSeed(SEED);
+        kMeans.fit(data);
+        return kMeans;
+    }
+}
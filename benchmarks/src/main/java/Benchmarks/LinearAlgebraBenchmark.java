@@ -0,0 +1,85 @@
+package Benchmarks;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import Compute.ComputePool;
+import LinRegression.Gemv;
+import LinRegression.Inverse;
+import LinRegression.MatMult;
+import LinRegression.Transpose;
+
+//Square n x n kernels on a pool of the given size
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LinearAlgebraBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"256", "1024", "2000"})
+    public int n;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private double[][] a;
+    private double[][] b;
+    private double[][] invertible;
+    private double[] vector;
+    private ComputePool pool;
+    private MatMult matMult;
+
+    @Setup
+    public void setup() {
+        a = BenchmarkData.matrix(n, n, SEED);
+        b = BenchmarkData.matrix(n, n, SEED + 1);
+        invertible = BenchmarkData.invertibleMatrix(n, SEED + 2);
+        vector = b[0];
+        pool = new ComputePool(threads);
+        matMult = new MatMult(new double[][][] {a, b}, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public double[][] multiplyTwo() throws Exception {
+        return matMult.multiplyTwo(a, b);
+    }
+
+    @Benchmark
+    public double[] multiplyMatrixVector() {
+        return Gemv.multiply(a, vector, pool);
+    }
+
+    //All n rows of b as vectors, one pass over a
+    @Benchmark
+    public double[][] multiplyMatrixVectors() {
+        return Gemv.multiply(a, b, pool);
+    }
+
+    @Benchmark
+    public double[][] transpose() {
+        return Transpose.transpose(a, pool);
+    }
+
+    //Square, so every invocation leaves a matrix of the same shape for the next one
+    @Benchmark
+    public double[][] transposeInPlace() {
+        Transpose.transposeInPlace(b, pool);
+        return b;
+    }
+
+    @Benchmark
+    public double[][] invert() {
+        return Inverse.invert(invertible, pool);
+    }
+}
@@ -0,0 +1,60 @@
+package Benchmarks;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import LinRegression.LinearRegression;
+import LinRegression.LinearRegressionSplitting;
+import LinRegression.SequentialLinearRegression;
+
+//Fits of n rows and d features; the splitting modes use threads shards
+//LinearRegression.solve runs on the shared pool, so its threads entries all measure the same thing
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegressionBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"100000", "1000000"})
+    public int n;
+
+    @Param({"2", "16"})
+    public int d;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"AVERAGE", "SEQUENTIAL_AVERAGE", "TSQR", "SUFFICIENT_STATISTICS"})
+    public LinearRegressionSplitting.Mode mode;
+
+    private double[][] X;
+    private double[] y;
+
+    @Setup
+    public void setup() {
+        X = BenchmarkData.matrix(n, d, SEED);
+        y = BenchmarkData.targets(X, SEED + 1);
+    }
+
+    @Benchmark
+    public double[] splitting() {
+        return new LinearRegressionSplitting(X, y, threads, mode).getCoeffs();
+    }
+
+    @Benchmark
+    public double[] solve() {
+        return LinearRegression.solve(X, y, false);
+    }
+
+    @Benchmark
+    public double[] sequential() {
+        SequentialLinearRegression regression = new SequentialLinearRegression();
+        regression.fit(X, y);
+        return regression.getCoefficients();
+    }
+}
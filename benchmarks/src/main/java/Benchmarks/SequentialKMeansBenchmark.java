@@ -0,0 +1,43 @@
+package Benchmarks;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import KMeans.KMeansData;
+import KMeans.SequentialKmeans;
+
+//Baseline for KMeansBenchmark: the same fits on the calling thread, measured once per data shape
+//rather than once per thread count
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SequentialKMeansBenchmark {
+    @Param({"100000", "1000000"})
+    public int n;
+
+    @Param({"2", "16"})
+    public int d;
+
+    @Param({"8", "64"})
+    public int k;
+
+    private KMeansData data;
+
+    @Setup
+    public void setup() {
+        data = KMeansData.of(BenchmarkData.clusteredPoints(n, d, k, KMeansBenchmark.SEED));
+    }
+
+    @Benchmark
+    public SequentialKmeans sequential() throws Exception {
+        SequentialKmeans kMeans = new SequentialKmeans(k, KMeansBenchmark.MAX_ITERATIONS, 0);
+        kMeans.setSeed(KMeansBenchmark.SEED);
+        kMeans.fit(data);
+        return kMeans;
+    }
+}